@@ -0,0 +1,156 @@
+package com.bettercallxiaojin.home.cache;
+
+import com.bettercallxiaojin.home.common.Constant.CacheTypeConstant;
+import com.bettercallxiaojin.home.mapper.UserMapper;
+import com.bettercallxiaojin.home.pojo.VO.SimpleUserVO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 作者卡片两级缓存：进程内 Caffeine 为一级，Redis 为二级，都未命中时批量查库
+ * 卡片只在修改资料、头像时变化，由 UserServiceImpl 负责失效
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class AuthorCardCache {
+
+    private static final String CARD_PREFIX = "user:card:";
+    private static final Duration CARD_TTL = Duration.ofHours(1);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final UserMapper userMapper;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    private final Cache<String, SimpleUserVO> localCards = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(5))
+            .build();
+
+    @PostConstruct
+    public void subscribeInvalidation() {
+        cacheInvalidationBus.subscribe(CacheTypeConstant.USER, localCards::invalidate);
+    }
+
+    /**
+     * @return 用户ID到作者卡片的映射，不存在的用户不会出现在结果中
+     */
+    public Map<String, SimpleUserVO> getAll(Collection<String> userIds) {
+        Set<String> ids = new LinkedHashSet<>(userIds);
+        Map<String, SimpleUserVO> result = new HashMap<>(localCards.getAllPresent(ids));
+
+        List<String> missingIds = new ArrayList<>();
+        for (String userId : ids) {
+            if (!result.containsKey(userId)) {
+                missingIds.add(userId);
+            }
+        }
+        if (missingIds.isEmpty()) {
+            return result;
+        }
+
+        Map<String, SimpleUserVO> remoteCards = getRemote(missingIds);
+        localCards.putAll(remoteCards);
+        result.putAll(remoteCards);
+
+        List<String> loadIds = new ArrayList<>();
+        for (String userId : missingIds) {
+            if (!remoteCards.containsKey(userId)) {
+                loadIds.add(userId);
+            }
+        }
+        if (loadIds.isEmpty()) {
+            return result;
+        }
+
+        Map<String, SimpleUserVO> loaded = new HashMap<>();
+        for (SimpleUserVO user : userMapper.selectSimpleUsersByIds(loadIds)) {
+            loaded.put(user.getId(), toCard(user));
+        }
+        putRemote(loaded);
+        localCards.putAll(loaded);
+        result.putAll(loaded);
+        return result;
+    }
+
+    public void evict(String userId) {
+        localCards.invalidate(userId);
+        try {
+            redisTemplate.delete(CARD_PREFIX + userId);
+        } catch (Exception e) {
+            log.warn("evict author card failed, user: {}, error: {}", userId, e.getMessage());
+        }
+        cacheInvalidationBus.publish(CacheTypeConstant.USER, userId);
+    }
+
+    private Map<String, SimpleUserVO> getRemote(List<String> userIds) {
+        Map<String, SimpleUserVO> cards = new HashMap<>();
+        List<String> keys = new ArrayList<>();
+        for (String userId : userIds) {
+            keys.add(CARD_PREFIX + userId);
+        }
+
+        try {
+            List<String> values = redisTemplate.opsForValue().multiGet(keys);
+            if (values == null) {
+                return cards;
+            }
+            for (int i = 0; i < userIds.size(); i++) {
+                if (values.get(i) != null) {
+                    cards.put(userIds.get(i), objectMapper.readValue(values.get(i), SimpleUserVO.class));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("read author cards from redis failed: {}", e.getMessage());
+        }
+        return cards;
+    }
+
+    private void putRemote(Map<String, SimpleUserVO> cards) {
+        if (cards.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, String> values = new HashMap<>();
+            for (SimpleUserVO card : cards.values()) {
+                values.put(CARD_PREFIX + card.getId(), objectMapper.writeValueAsString(card));
+            }
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                values.forEach((key, value) -> stringConnection.setEx(key, CARD_TTL.toSeconds(), value));
+                return null;
+            });
+        } catch (JsonProcessingException e) {
+            log.warn("serialize author card failed: {}", e.getMessage());
+        } catch (Exception e) {
+            log.warn("write author cards to redis failed: {}", e.getMessage());
+        }
+    }
+
+    private SimpleUserVO toCard(SimpleUserVO user) {
+        SimpleUserVO card = new SimpleUserVO();
+        card.setId(user.getId());
+        card.setUsername(user.getUsername());
+        card.setIcon(user.getIcon());
+        return card;
+    }
+}
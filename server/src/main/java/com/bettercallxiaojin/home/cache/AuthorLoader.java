@@ -0,0 +1,74 @@
+package com.bettercallxiaojin.home.cache;
+
+import com.bettercallxiaojin.home.pojo.VO.SimpleUserVO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 批量加载作者卡片（id、用户名、头像）
+ * 转换列表时先收集所有作者ID，一次从 AuthorCardCache 批量获取，结果在同一个请求内复用
+ */
+@Component
+@RequiredArgsConstructor
+public class AuthorLoader {
+
+    private static final String MEMO_ATTRIBUTE = AuthorLoader.class.getName() + ".memo";
+
+    private final AuthorCardCache authorCardCache;
+
+    public SimpleUserVO load(String userId) {
+        return loadAll(List.of(userId)).get(userId);
+    }
+
+    /**
+     * @return 用户ID到作者卡片的映射，不存在的用户不会出现在结果中
+     */
+    public Map<String, SimpleUserVO> loadAll(Collection<String> userIds) {
+        Map<String, SimpleUserVO> memo = getMemo();
+
+        Set<String> missingIds = new LinkedHashSet<>();
+        for (String userId : userIds) {
+            if (userId != null && !memo.containsKey(userId)) {
+                missingIds.add(userId);
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            memo.putAll(authorCardCache.getAll(missingIds));
+        }
+
+        Map<String, SimpleUserVO> result = new HashMap<>();
+        for (String userId : userIds) {
+            SimpleUserVO user = userId == null ? null : memo.get(userId);
+            if (user != null) {
+                result.put(userId, user);
+            }
+        }
+        return result;
+    }
+
+    // 不在 Web 请求中（如后台任务）时不做记忆
+    @SuppressWarnings("unchecked")
+    private Map<String, SimpleUserVO> getMemo() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return new HashMap<>();
+        }
+
+        Map<String, SimpleUserVO> memo = (Map<String, SimpleUserVO>) attributes.getAttribute(MEMO_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (memo == null) {
+            memo = new HashMap<>();
+            attributes.setAttribute(MEMO_ATTRIBUTE, memo, RequestAttributes.SCOPE_REQUEST);
+        }
+        return memo;
+    }
+}
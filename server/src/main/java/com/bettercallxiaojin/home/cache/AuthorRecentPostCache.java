@@ -0,0 +1,188 @@
+package com.bettercallxiaojin.home.cache;
+
+import com.bettercallxiaojin.home.common.Constant.CacheTypeConstant;
+import com.bettercallxiaojin.home.mapper.PostMapper;
+import com.bettercallxiaojin.home.pojo.entity.Post;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内缓存每个作者最近的 RING_SIZE 条帖子（只含ID和创建时间），
+ * 关注流按页读取时对所有关注作者的环做多路归并，不再对整张 post 表做 IN 查询
+ * 加载前为作者登记一个加载标记，查库期间有新帖子或失效会清掉标记，这次加载的结果就不放进缓存，避免漏掉新帖子
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class AuthorRecentPostCache {
+
+    public static final int RING_SIZE = 50;
+    private static final int MAX_AUTHORS = 10000;
+
+    private final PostMapper postMapper;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    private final Map<String, Ring> rings = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Ring> eldest) {
+                    return size() > MAX_AUTHORS;
+                }
+            });
+    // 作者ID到正在进行的加载的标记
+    private final Map<String, Object> loading = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void subscribeInvalidation() {
+        cacheInvalidationBus.subscribe(CacheTypeConstant.AUTHOR_POSTS, this::discard);
+    }
+
+    /**
+     * 对多个作者的最近帖子做多路归并，取出按时间倒序的一页帖子ID
+     * @return 某个作者的环不足以覆盖这一页时返回 null，由调用方回源数据库
+     */
+    public List<String> merge(List<String> authorIds, int offset, int count) {
+        Map<String, Ring> authorRings = getRings(authorIds);
+
+        // 堆中每个元素是 {作者环, 下一个要取的位置}
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(
+                Math.max(authorRings.size(), 1),
+                (a, b) -> b.current().getCreatedAt().compareTo(a.current().getCreatedAt()));
+        for (Ring ring : authorRings.values()) {
+            if (!ring.posts.isEmpty()) {
+                heap.add(new Cursor(ring.posts, ring.complete, 0));
+            }
+        }
+
+        List<String> postIds = new ArrayList<>();
+        int skipped = 0;
+        while (postIds.size() < count && !heap.isEmpty()) {
+            Cursor cursor = heap.poll();
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                postIds.add(cursor.current().getId());
+            }
+
+            if (cursor.index + 1 < cursor.posts.size()) {
+                heap.add(new Cursor(cursor.posts, cursor.complete, cursor.index + 1));
+            } else if (!cursor.complete && postIds.size() < count) {
+                // 这个作者还有更早的帖子没有缓存，归并结果不再可靠
+                return null;
+            }
+        }
+        return postIds;
+    }
+
+    public void add(Post post) {
+        // 其它节点直接丢弃这个作者的环
+        cacheInvalidationBus.publish(CacheTypeConstant.AUTHOR_POSTS, post.getUserId());
+
+        // 环不存在时不需要更新，但正在进行的加载可能没有读到这条帖子
+        loading.remove(post.getUserId());
+        Ring ring = rings.get(post.getUserId());
+        if (ring == null) {
+            return;
+        }
+        synchronized (ring) {
+            List<Post> posts = new ArrayList<>(RING_SIZE);
+            posts.add(idOnly(post));
+            posts.addAll(ring.posts);
+            boolean complete = ring.complete;
+            if (posts.size() > RING_SIZE) {
+                posts = new ArrayList<>(posts.subList(0, RING_SIZE));
+                complete = false;
+            }
+            ring.posts = posts;
+            ring.complete = complete;
+        }
+    }
+
+    /**
+     * 作者的帖子有删除或其它变化时直接丢弃整个环，下次读取时重新加载
+     */
+    public void evict(String authorId) {
+        discard(authorId);
+        cacheInvalidationBus.publish(CacheTypeConstant.AUTHOR_POSTS, authorId);
+    }
+
+    private Map<String, Ring> getRings(List<String> authorIds) {
+        Map<String, Ring> result = new HashMap<>();
+        List<String> missingIds = new ArrayList<>();
+        for (String authorId : authorIds) {
+            Ring ring = rings.get(authorId);
+            if (ring == null) {
+                missingIds.add(authorId);
+            } else {
+                result.put(authorId, ring);
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            Object marker = new Object();
+            missingIds.forEach(authorId -> loading.put(authorId, marker));
+            try {
+                Map<String, List<Post>> loaded = new HashMap<>();
+                for (Post post : postMapper.selectRecentIdsPerUser(missingIds, RING_SIZE)) {
+                    loaded.computeIfAbsent(post.getUserId(), k -> new ArrayList<>()).add(post);
+                }
+                for (String authorId : missingIds) {
+                    List<Post> posts = loaded.getOrDefault(authorId, List.of());
+                    Ring ring = new Ring(posts, posts.size() < RING_SIZE);
+                    // 先放进缓存再检查标记，标记被清掉说明查库期间有变化，撤回这次结果，只用于本次读取
+                    rings.put(authorId, ring);
+                    if (!loading.remove(authorId, marker)) {
+                        rings.remove(authorId, ring);
+                    }
+                    result.put(authorId, ring);
+                }
+            } finally {
+                missingIds.forEach(authorId -> loading.remove(authorId, marker));
+            }
+            log.debug("load recent post rings for {} authors", missingIds.size());
+        }
+        return result;
+    }
+
+    private void discard(String authorId) {
+        loading.remove(authorId);
+        rings.remove(authorId);
+    }
+
+    private Post idOnly(Post post) {
+        Post copy = new Post();
+        copy.setId(post.getId());
+        copy.setUserId(post.getUserId());
+        copy.setCreatedAt(post.getCreatedAt());
+        return copy;
+    }
+
+    private static class Ring {
+        // 按创建时间倒序，写时整体替换，读时无需加锁
+        private volatile List<Post> posts;
+        // 作者的帖子总数不超过 RING_SIZE，环里就是全部帖子
+        private volatile boolean complete;
+
+        private Ring(List<Post> posts, boolean complete) {
+            this.posts = posts;
+            this.complete = complete;
+        }
+    }
+
+    private record Cursor(List<Post> posts, boolean complete, int index) {
+        private Post current() {
+            return posts.get(index);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.bettercallxiaojin.home.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 多实例之间的进程内缓存失效广播，基于 Redis pub/sub
+ * 消息格式：type|id|version|nodeId|sentAt，version 为发送节点上的递增序号，用于发现丢失的消息
+ * 发送方自己的本地缓存由调用方直接处理，广播只通知其它节点
+ */
+@Component
+@Slf4j
+public class CacheInvalidationBus implements MessageListener {
+
+    public static final String CHANNEL = "cache:invalidate";
+    private static final String SEPARATOR = "|";
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, List<Consumer<String>>> handlers = new ConcurrentHashMap<>();
+    // 每个发送节点最后收到的序号
+    private final Map<String, Long> lastVersions = new ConcurrentHashMap<>();
+
+    private final Counter gapCounter;
+
+    public CacheInvalidationBus(StringRedisTemplate redisTemplate, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.gapCounter = Counter.builder("cache.invalidation.gap")
+                .description("Invalidation messages detected as lost")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 注册某类实体的本地失效处理，参数为实体ID
+     */
+    public void subscribe(String type, Consumer<String> handler) {
+        handlers.computeIfAbsent(type, k -> new CopyOnWriteArrayList<>()).add(handler);
+    }
+
+    public void publish(String type, String id) {
+        String message = String.join(SEPARATOR,
+                type, id, String.valueOf(sequence.incrementAndGet()), nodeId, String.valueOf(System.currentTimeMillis()));
+        try {
+            redisTemplate.convertAndSend(CHANNEL, message);
+        } catch (Exception e) {
+            log.warn("publish cache invalidation failed, type: {}, id: {}, error: {}", type, id, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|");
+        if (parts.length != 5) {
+            log.warn("invalid cache invalidation message");
+            return;
+        }
+        String type = parts[0];
+        String id = parts[1];
+        String senderId = parts[3];
+        long version;
+        long sentAt;
+        try {
+            version = Long.parseLong(parts[2]);
+            sentAt = Long.parseLong(parts[4]);
+        } catch (NumberFormatException e) {
+            log.warn("invalid cache invalidation message: {}", e.getMessage());
+            return;
+        }
+
+        if (nodeId.equals(senderId)) {
+            return;
+        }
+
+        Long lastVersion = lastVersions.put(senderId, version);
+        if (lastVersion != null && version > lastVersion + 1) {
+            gapCounter.increment(version - lastVersion - 1);
+            log.warn("lost {} cache invalidation messages from node {}", version - lastVersion - 1, senderId);
+        }
+
+        // 传播延迟，依赖各节点时钟同步
+        Timer.builder("cache.invalidation.lag")
+                .description("Delay between publishing and applying a cache invalidation")
+                .tag("type", type)
+                .register(meterRegistry)
+                .record(Duration.ofMillis(Math.max(System.currentTimeMillis() - sentAt, 0)));
+
+        for (Consumer<String> handler : handlers.getOrDefault(type, List.of())) {
+            try {
+                handler.accept(id);
+            } catch (Exception e) {
+                log.warn("apply cache invalidation failed, type: {}, id: {}, error: {}", type, id, e.getMessage());
+            }
+        }
+    }
+}
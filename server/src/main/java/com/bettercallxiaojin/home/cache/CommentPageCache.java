@@ -0,0 +1,16 @@
+package com.bettercallxiaojin.home.cache;
+
+import com.bettercallxiaojin.home.common.Constant.CacheTypeConstant;
+import com.bettercallxiaojin.home.pojo.VO.CommentVO;
+import org.springframework.stereotype.Component;
+
+/**
+ * 帖子下的评论分页，以帖子ID为单位失效
+ */
+@Component
+public class CommentPageCache extends SharedPageCache<CommentVO> {
+
+    public CommentPageCache(CacheInvalidationBus cacheInvalidationBus) {
+        super(CacheTypeConstant.COMMENT_PAGES, cacheInvalidationBus);
+    }
+}
@@ -0,0 +1,136 @@
+package com.bettercallxiaojin.home.cache;
+
+import com.bettercallxiaojin.home.pojo.entity.Post;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 每个用户的关注收件箱，Redis ZSET 中 member 为帖子ID，score 为创建时间
+ * 只有重建过（ready）的收件箱才会接收扇出，不活跃用户的收件箱随 TTL 过期
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FollowInboxCache {
+
+    public static final int CAPACITY = 500;
+
+    private static final String INBOX_PREFIX = "feed:inbox:";
+    private static final String READY_PREFIX = "feed:inbox:ready:";
+    private static final Duration INBOX_TTL = Duration.ofHours(24);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public static boolean covers(int offset, int count) {
+        return offset + count <= CAPACITY;
+    }
+
+    /**
+     * 按时间倒序读取收件箱的一段帖子ID
+     * @return 超出缓存范围或收件箱尚未重建时返回 null
+     */
+    public List<String> range(String userId, int offset, int count) {
+        if (!covers(offset, count)) {
+            return null;
+        }
+
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            stringConnection.exists(READY_PREFIX + userId);
+            stringConnection.zRevRange(INBOX_PREFIX + userId, offset, offset + count - 1);
+            return null;
+        });
+
+        if (!Boolean.TRUE.equals(results.get(0))) {
+            return null;
+        }
+        List<String> postIds = new ArrayList<>();
+        if (results.get(1) instanceof Collection<?> members) {
+            for (Object member : members) {
+                postIds.add(member.toString());
+            }
+        }
+        return postIds;
+    }
+
+    /**
+     * 用关注用户的最新帖子重建收件箱
+     */
+    public void rebuild(String userId, List<Post> posts) {
+        String inboxKey = INBOX_PREFIX + userId;
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            stringConnection.del(inboxKey);
+            for (Post post : posts) {
+                stringConnection.zAdd(inboxKey, toScore(post), post.getId());
+            }
+            stringConnection.expire(inboxKey, INBOX_TTL.toSeconds());
+            stringConnection.setEx(READY_PREFIX + userId, INBOX_TTL.toSeconds(), "1");
+            return null;
+        });
+    }
+
+    /**
+     * 把帖子推送到多个用户的收件箱，跳过尚未重建的收件箱
+     */
+    public void push(List<String> userIds, List<Post> posts) {
+        if (userIds.isEmpty() || posts.isEmpty()) {
+            return;
+        }
+
+        List<Object> ready = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            for (String userId : userIds) {
+                stringConnection.exists(READY_PREFIX + userId);
+            }
+            return null;
+        });
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            for (int i = 0; i < userIds.size(); i++) {
+                if (!Boolean.TRUE.equals(ready.get(i))) {
+                    continue;
+                }
+                String inboxKey = INBOX_PREFIX + userIds.get(i);
+                for (Post post : posts) {
+                    stringConnection.zAdd(inboxKey, toScore(post), post.getId());
+                }
+                stringConnection.zRemRange(inboxKey, 0, -(CAPACITY + 1));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 从多个用户的收件箱中移除帖子
+     */
+    public void remove(List<String> userIds, List<String> postIds) {
+        if (userIds.isEmpty() || postIds.isEmpty()) {
+            return;
+        }
+
+        String[] members = postIds.toArray(new String[0]);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            for (String userId : userIds) {
+                stringConnection.zRem(INBOX_PREFIX + userId, members);
+            }
+            return null;
+        });
+    }
+
+    private double toScore(Post post) {
+        return post.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
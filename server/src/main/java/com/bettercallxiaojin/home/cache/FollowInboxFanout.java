@@ -0,0 +1,53 @@
+package com.bettercallxiaojin.home.cache;
+
+import com.bettercallxiaojin.home.mapper.FollowMapper;
+import com.bettercallxiaojin.home.mapper.PostMapper;
+import com.bettercallxiaojin.home.pojo.entity.Post;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 关注收件箱的异步维护：发帖扇出、删帖移除、关注回填、取关清理
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FollowInboxFanout {
+
+    private final FollowMapper followMapper;
+    private final PostMapper postMapper;
+    private final FollowInboxCache followInboxCache;
+
+    @Async("feedExecutor")
+    public void onPostCreated(Post post) {
+        List<String> followerIds = followMapper.selectFollowerByUserId(post.getUserId());
+        followInboxCache.push(followerIds, List.of(post));
+        log.debug("fan out post {} to {} followers", post.getId(), followerIds.size());
+    }
+
+    @Async("feedExecutor")
+    public void onPostDeleted(Post post) {
+        List<String> followerIds = followMapper.selectFollowerByUserId(post.getUserId());
+        followInboxCache.remove(followerIds, List.of(post.getId()));
+    }
+
+    @Async("feedExecutor")
+    public void onFollow(String userId, String followId) {
+        List<Post> posts = postMapper.selectRecentIdsByUserId(followId, FollowInboxCache.CAPACITY);
+        followInboxCache.push(List.of(userId), posts);
+    }
+
+    @Async("feedExecutor")
+    public void onUnfollow(String userId, String followId) {
+        List<String> postIds = new ArrayList<>();
+        for (Post post : postMapper.selectRecentIdsByUserId(followId, FollowInboxCache.CAPACITY)) {
+            postIds.add(post.getId());
+        }
+        followInboxCache.remove(List.of(userId), postIds);
+    }
+}
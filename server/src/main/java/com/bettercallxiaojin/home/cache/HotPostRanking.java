@@ -0,0 +1,184 @@
+package com.bettercallxiaojin.home.cache;
+
+import com.bettercallxiaojin.home.common.util.RedisLockUtil;
+import com.bettercallxiaojin.home.mapper.PostMapper;
+import com.bettercallxiaojin.home.pojo.entity.Post;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 热度排行，Redis ZSET 中 member 为帖子ID，score 为随时间衰减的热度
+ * 点赞、评论只把帖子标记为 dirty，由后台任务批量重算；衰减导致的排名变化由定期全量重建处理
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class HotPostRanking {
+
+    public static final int CAPACITY = 5000;
+    // 只有这段时间内发布的帖子参与热度排行
+    public static final Duration WINDOW = Duration.ofDays(7);
+
+    private static final String RANKING_KEY = "post:hot";
+    private static final String DIRTY_KEY = "post:hot:dirty";
+    private static final String READY_KEY = "post:hot:ready";
+    private static final Duration READY_TTL = Duration.ofHours(1);
+    // 请求线程发现排行不存在时的重建锁，只让一个请求重建，其它请求直接查库
+    private static final String REBUILD_LOCK_KEY = "post:hot:rebuild:lock";
+    private static final Duration REBUILD_LOCK_TTL = Duration.ofSeconds(30);
+
+    private static final double COMMENT_WEIGHT = 2.0;
+    private static final double GRAVITY = 1.5;
+
+    private final StringRedisTemplate redisTemplate;
+    private final PostMapper postMapper;
+
+    /**
+     * 热度 = (点赞 + 2 * 评论 + 1) / (发布小时数 + 2) ^ 1.5
+     */
+    public static double score(Post post, LocalDateTime now) {
+        double points = post.getLikeCount() + COMMENT_WEIGHT * post.getCommentCount() + 1;
+        double ageHours = Math.max(Duration.between(post.getCreatedAt(), now).toMinutes(), 0) / 60.0;
+        return points / Math.pow(ageHours + 2, GRAVITY);
+    }
+
+    /**
+     * 按热度倒序读取一段帖子ID
+     * @return 排行尚未建立时返回 null
+     */
+    public List<String> range(int offset, int count) {
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            stringConnection.exists(READY_KEY);
+            stringConnection.zRevRange(RANKING_KEY, offset, offset + count - 1);
+            return null;
+        });
+
+        if (!Boolean.TRUE.equals(results.get(0))) {
+            return null;
+        }
+        List<String> postIds = new ArrayList<>();
+        if (results.get(1) instanceof Collection<?> members) {
+            for (Object member : members) {
+                postIds.add(member.toString());
+            }
+        }
+        return postIds;
+    }
+
+    /**
+     * 从数据库按热度读取一段帖子ID，排行不可用时使用
+     */
+    public List<String> rangeFromDatabase(int offset, int count) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Post> posts = postMapper.selectHottestAfter(now.minus(WINDOW), now, offset + count);
+        List<String> postIds = new ArrayList<>();
+        for (int i = offset; i < posts.size(); i++) {
+            postIds.add(posts.get(i).getId());
+        }
+        return postIds;
+    }
+
+    // 标记失败只影响排行的及时性，不影响已经完成的写操作
+    public void markDirty(String postId) {
+        try {
+            redisTemplate.opsForSet().add(DIRTY_KEY, postId);
+        } catch (Exception e) {
+            log.warn("mark hot post dirty failed, post: {}, error: {}", postId, e.getMessage());
+        }
+    }
+
+    public void remove(String postId) {
+        try {
+            redisTemplate.opsForZSet().remove(RANKING_KEY, postId);
+        } catch (Exception e) {
+            log.warn("remove hot post failed, post: {}, error: {}", postId, e.getMessage());
+        }
+    }
+
+    /**
+     * 重算被标记为 dirty 的帖子
+     * @return 本次处理的帖子数量
+     */
+    public int refreshDirty(int batchSize) {
+        List<String> postIds = redisTemplate.opsForSet().pop(DIRTY_KEY, batchSize);
+        if (postIds == null || postIds.isEmpty()) {
+            return 0;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime since = now.minus(WINDOW);
+        List<Post> posts = postMapper.selectPostsByIds(postIds);
+
+        Set<String> existing = new HashSet<>();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            for (Post post : posts) {
+                existing.add(post.getId());
+                if (post.getCreatedAt().isAfter(since)) {
+                    stringConnection.zAdd(RANKING_KEY, score(post, now), post.getId());
+                } else {
+                    // 已经超出时间窗口
+                    stringConnection.zRem(RANKING_KEY, post.getId());
+                }
+            }
+            // 已删除的帖子
+            for (String postId : postIds) {
+                if (!existing.contains(postId)) {
+                    stringConnection.zRem(RANKING_KEY, postId);
+                }
+            }
+            stringConnection.zRemRange(RANKING_KEY, 0, -(CAPACITY + 1));
+            return null;
+        });
+        return postIds.size();
+    }
+
+    /**
+     * 拿到重建锁时重建排行
+     * @return 没有拿到锁时返回 false，调用方应直接查库
+     */
+    public boolean tryRebuild() {
+        String token = RedisLockUtil.tryLock(redisTemplate, REBUILD_LOCK_KEY, REBUILD_LOCK_TTL);
+        if (token == null) {
+            return false;
+        }
+        try {
+            rebuild();
+            return true;
+        } finally {
+            RedisLockUtil.unlock(redisTemplate, REBUILD_LOCK_KEY, token);
+        }
+    }
+
+    /**
+     * 用时间窗口内热度最高的帖子重建排行
+     */
+    public void rebuild() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Post> posts = postMapper.selectHottestAfter(now.minus(WINDOW), now, CAPACITY);
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            stringConnection.del(RANKING_KEY);
+            for (Post post : posts) {
+                stringConnection.zAdd(RANKING_KEY, score(post, now), post.getId());
+            }
+            stringConnection.setEx(READY_KEY, READY_TTL.toSeconds(), "1");
+            return null;
+        });
+        log.info("rebuild hot post ranking, size: {}", posts.size());
+    }
+}
@@ -0,0 +1,118 @@
+package com.bettercallxiaojin.home.cache;
+
+import com.bettercallxiaojin.home.common.util.RedisLockUtil;
+import com.bettercallxiaojin.home.pojo.entity.Post;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 全站最新帖子时间线，Redis ZSET 中 member 为帖子ID，score 为创建时间
+ * 只保留最新的 CAPACITY 条，超出范围的翻页仍然走数据库
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class LatestTimelineCache {
+
+    public static final int CAPACITY = 1000;
+
+    private static final String TIMELINE_KEY = "timeline:latest";
+    // 时间线重建完成的标记，过期后下一次读取会从数据库重建，顺便修正漂移
+    private static final String READY_KEY = "timeline:latest:ready";
+    private static final Duration READY_TTL = Duration.ofHours(24);
+    // 重建锁，就绪标记过期时只让一个请求查库重建，其它请求直接走数据库
+    private static final String REBUILD_LOCK_KEY = "timeline:latest:rebuild:lock";
+    private static final Duration REBUILD_LOCK_TTL = Duration.ofSeconds(30);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public static boolean covers(int offset, int count) {
+        return offset + count <= CAPACITY;
+    }
+
+    /**
+     * 按时间倒序读取一段帖子ID，就绪检查和 ZREVRANGE 在同一个 pipeline 中完成
+     * @return 超出缓存范围或时间线尚未重建时返回 null
+     */
+    public List<String> range(int offset, int count) {
+        if (!covers(offset, count)) {
+            return null;
+        }
+
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            stringConnection.exists(READY_KEY);
+            stringConnection.zRevRange(TIMELINE_KEY, offset, offset + count - 1);
+            return null;
+        });
+
+        if (!Boolean.TRUE.equals(results.get(0))) {
+            return null;
+        }
+        List<String> postIds = new ArrayList<>();
+        if (results.get(1) instanceof Collection<?> members) {
+            for (Object member : members) {
+                postIds.add(member.toString());
+            }
+        }
+        return postIds;
+    }
+
+    public void add(Post post) {
+        redisTemplate.opsForZSet().add(TIMELINE_KEY, post.getId(), toScore(post.getCreatedAt()));
+        redisTemplate.opsForZSet().removeRange(TIMELINE_KEY, 0, -(CAPACITY + 1));
+    }
+
+    public void remove(String postId) {
+        redisTemplate.opsForZSet().remove(TIMELINE_KEY, postId);
+    }
+
+    /**
+     * 拿到重建锁时用 loader 查出的帖子重建时间线
+     * @return 没有拿到锁时返回 false，调用方应直接查库
+     */
+    public boolean tryRebuild(Supplier<List<Post>> loader) {
+        String token = RedisLockUtil.tryLock(redisTemplate, REBUILD_LOCK_KEY, REBUILD_LOCK_TTL);
+        if (token == null) {
+            return false;
+        }
+        try {
+            rebuild(loader.get());
+            return true;
+        } finally {
+            RedisLockUtil.unlock(redisTemplate, REBUILD_LOCK_KEY, token);
+        }
+    }
+
+    /**
+     * 用数据库中最新的帖子重建时间线
+     */
+    public void rebuild(List<Post> latestPosts) {
+        log.info("rebuild latest timeline, size: {}", latestPosts.size());
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            stringConnection.del(TIMELINE_KEY);
+            for (Post post : latestPosts) {
+                stringConnection.zAdd(TIMELINE_KEY, toScore(post.getCreatedAt()), post.getId());
+            }
+            stringConnection.setEx(READY_KEY, READY_TTL.toSeconds(), "1");
+            return null;
+        });
+    }
+
+    private double toScore(LocalDateTime createdAt) {
+        return createdAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,179 @@
+package com.bettercallxiaojin.home.cache;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 点赞/取消点赞的合并窗口：同一用户对同一目标的连续切换只记录最终状态，窗口结束时只落库一次
+ * 窗口内读取点赞状态以这里记录的状态为准；落库完成前记录一直保留，落库失败会重试
+ * 窗口是每个节点各自的，最终状态同时写到 Redis，落库时以 Redis 中最新的状态为准，
+ * 同一用户的切换落到不同节点时，最后落库的节点写入的是全局最新的状态；其它节点窗口内的待落库状态本节点读不到
+ * 落库会写入点赞计数和通知的写后队列，停机时依赖的 bean 后销毁，保证这里先清空，它们再各自清空
+ */
+@Component
+@DependsOn({"likeCountAggregator", "notificationWriter"})
+@Slf4j
+public class LikeToggleDebouncer {
+
+    private static final String STATE_PREFIX = "like:toggle:";
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final TaskScheduler taskScheduler;
+    private final StringRedisTemplate redisTemplate;
+    private final Duration window;
+    private final Duration stateTtl;
+
+    private final Map<String, Toggle> toggles = new ConcurrentHashMap<>();
+
+    private volatile boolean shuttingDown;
+
+    public LikeToggleDebouncer(TaskScheduler taskScheduler,
+                               StringRedisTemplate redisTemplate,
+                               @Value("${bettercallxiaojin.like.debounce-ms:2000}") long windowMillis) {
+        this.taskScheduler = taskScheduler;
+        this.redisTemplate = redisTemplate;
+        this.window = Duration.ofMillis(windowMillis);
+        // 覆盖所有重试
+        this.stateTtl = window.multipliedBy(MAX_ATTEMPTS * 2L).plusMinutes(1);
+    }
+
+    /**
+     * @return 窗口内尚未落库的最终状态，没有待处理的切换时返回 null
+     */
+    public Boolean pending(String userId, Integer targetType, String targetId) {
+        Toggle toggle = toggles.get(key(userId, targetType, targetId));
+        return toggle == null ? null : toggle.liked;
+    }
+
+    /**
+     * 记录期望的状态，窗口内第一次切换时安排落库，persist 的参数为落库时的最终状态
+     */
+    public void submit(String userId, Integer targetType, String targetId, boolean liked, Consumer<Boolean> persist) {
+        String key = key(userId, targetType, targetId);
+        boolean shared = writeState(key, liked);
+        toggles.compute(key, (k, toggle) -> {
+            if (toggle != null) {
+                toggle.liked = liked;
+                toggle.shared = shared;
+                toggle.version++;
+                // 正在落库的记录由落库结束时检查版本并重新安排
+                return toggle;
+            }
+            schedule(k, window);
+            return new Toggle(liked, shared, persist);
+        });
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        shuttingDown = true;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !toggles.isEmpty(); attempt++) {
+            for (String key : new ArrayList<>(toggles.keySet())) {
+                flush(key);
+            }
+        }
+    }
+
+    private void flush(String key) {
+        Toggle toggle = toggles.get(key);
+        // 同一条记录同时只有一个落库
+        if (toggle == null || !toggle.persisting.compareAndSet(false, true)) {
+            return;
+        }
+        // 先取版本再读状态，读完之后的切换一定会改变版本
+        long version = toggle.version;
+        boolean liked = toggle.shared ? readState(key, toggle.liked) : toggle.liked;
+
+        boolean persisted = false;
+        try {
+            toggle.persist.accept(liked);
+            persisted = true;
+        } catch (Exception e) {
+            toggle.attempts++;
+            log.warn("persist like toggle failed, key: {}, attempt: {}, error: {}", key, toggle.attempts, e.getMessage());
+        }
+
+        boolean succeeded = persisted;
+        toggles.compute(key, (k, current) -> {
+            if (current != toggle) {
+                return current;
+            }
+            toggle.persisting.set(false);
+            if (succeeded && toggle.version == version) {
+                return null;
+            }
+            if (!succeeded && toggle.attempts >= MAX_ATTEMPTS) {
+                log.error("drop like toggle after {} attempts, key: {}", MAX_ATTEMPTS, k);
+                return null;
+            }
+            if (succeeded) {
+                toggle.attempts = 0;
+            }
+            // 落库期间又有切换或者落库失败，再安排一次；停机时由 flushAll 继续
+            if (!shuttingDown) {
+                schedule(k, succeeded ? window : window.multipliedBy(toggle.attempts));
+            }
+            return toggle;
+        });
+    }
+
+    private void schedule(String key, Duration delay) {
+        taskScheduler.schedule(() -> flush(key), Instant.now().plus(delay));
+    }
+
+    private boolean writeState(String key, boolean liked) {
+        try {
+            redisTemplate.opsForValue().set(STATE_PREFIX + key, Boolean.toString(liked), stateTtl);
+            return true;
+        } catch (Exception e) {
+            // Redis 里可能是旧状态，这条记录只按本地状态落库
+            log.warn("write like toggle state failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean readState(String key, boolean fallback) {
+        try {
+            String state = redisTemplate.opsForValue().get(STATE_PREFIX + key);
+            return state == null ? fallback : Boolean.parseBoolean(state);
+        } catch (Exception e) {
+            log.warn("read like toggle state failed: {}", e.getMessage());
+            return fallback;
+        }
+    }
+
+    private String key(String userId, Integer targetType, String targetId) {
+        return userId + ":" + targetType + ":" + targetId;
+    }
+
+    private static class Toggle {
+        private volatile boolean liked;
+        // 最终状态是否成功写入 Redis
+        private volatile boolean shared;
+        private final Consumer<Boolean> persist;
+        // 只在 toggles.compute 中递增
+        private volatile long version;
+        // 只由持有 persisting 的线程修改
+        private volatile int attempts;
+        private final AtomicBoolean persisting = new AtomicBoolean();
+
+        private Toggle(boolean liked, boolean shared, Consumer<Boolean> persist) {
+            this.liked = liked;
+            this.shared = shared;
+            this.persist = persist;
+        }
+    }
+}
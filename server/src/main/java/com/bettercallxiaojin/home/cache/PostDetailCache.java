@@ -0,0 +1,71 @@
+package com.bettercallxiaojin.home.cache;
+
+import com.bettercallxiaojin.home.common.Constant.CacheTypeConstant;
+import com.bettercallxiaojin.home.pojo.VO.PostVO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * 帖子详情的进程内缓存，只缓存与浏览者无关的部分（isLike、isCreator 由调用方叠加）
+ * 同一个帖子并发未命中时只有一个线程回源，其余线程等待它的结果；不存在的帖子也会短暂缓存
+ * 缓存的是 post 表中的计数，读取时再加上分片计数之和和本节点尚未落库的点赞增量
+ * 以下情况主动失效，并通过 CacheInvalidationBus 通知其它节点：帖子修改、删除，点赞增量落库（LikeCountAggregator），
+ * 分片计数合并回 post 表（PostCounterShards）；未分片帖子的评论数直接更新 post 表，不主动失效，依赖较短的过期时间
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PostDetailCache {
+
+    private static final Duration PRESENT_TTL = Duration.ofSeconds(30);
+    private static final Duration ABSENT_TTL = Duration.ofSeconds(5);
+
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    private final Cache<String, Optional<PostVO>> details = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfter(new Expiry<String, Optional<PostVO>>() {
+                @Override
+                public long expireAfterCreate(String key, Optional<PostVO> value, long currentTime) {
+                    return (value.isPresent() ? PRESENT_TTL : ABSENT_TTL).toNanos();
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, Optional<PostVO> value, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, value, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String key, Optional<PostVO> value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    @PostConstruct
+    public void subscribeInvalidation() {
+        cacheInvalidationBus.subscribe(CacheTypeConstant.POST, details::invalidate);
+    }
+
+    /**
+     * @param loader 回源函数，帖子不存在时返回 null
+     * @return 共享的帖子详情，调用方不能修改；帖子不存在时返回 null
+     */
+    public PostVO get(String postId, Function<String, PostVO> loader) {
+        return details.get(postId, id -> Optional.ofNullable(loader.apply(id))).orElse(null);
+    }
+
+    public void evict(String postId) {
+        details.invalidate(postId);
+        cacheInvalidationBus.publish(CacheTypeConstant.POST, postId);
+    }
+}
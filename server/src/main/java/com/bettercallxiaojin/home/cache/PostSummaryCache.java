@@ -0,0 +1,105 @@
+package com.bettercallxiaojin.home.cache;
+
+import com.bettercallxiaojin.home.pojo.VO.SimplePostVO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 帖子摘要缓存，每个帖子一个 JSON 字符串，列表页通过一次 MGET 批量读取
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PostSummaryCache {
+
+    private static final String SUMMARY_PREFIX = "post:summary:";
+    private static final Duration SUMMARY_TTL = Duration.ofMinutes(30);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 批量读取摘要，只返回命中的部分
+     */
+    public Map<String, SimplePostVO> multiGet(List<String> postIds) {
+        Map<String, SimplePostVO> result = new HashMap<>();
+        if (postIds == null || postIds.isEmpty()) {
+            return result;
+        }
+
+        List<String> keys = new ArrayList<>();
+        for (String postId : postIds) {
+            keys.add(SUMMARY_PREFIX + postId);
+        }
+
+        List<String> values = redisTemplate.opsForValue().multiGet(keys);
+        if (values == null) {
+            return result;
+        }
+
+        for (int i = 0; i < postIds.size(); i++) {
+            String value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            try {
+                result.put(postIds.get(i), objectMapper.readValue(value, SimplePostVO.class));
+            } catch (JsonProcessingException e) {
+                log.warn("invalid post summary in cache, id: {}", postIds.get(i));
+            }
+        }
+        return result;
+    }
+
+    public void putAll(Collection<SimplePostVO> summaries) {
+        if (summaries == null || summaries.isEmpty()) {
+            return;
+        }
+
+        Map<String, String> values = new HashMap<>();
+        for (SimplePostVO summary : summaries) {
+            try {
+                values.put(SUMMARY_PREFIX + summary.getId(), objectMapper.writeValueAsString(summary));
+            } catch (JsonProcessingException e) {
+                log.warn("serialize post summary failed, id: {}", summary.getId());
+            }
+        }
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            values.forEach((key, value) -> stringConnection.setEx(key, SUMMARY_TTL.toSeconds(), value));
+            return null;
+        });
+    }
+
+    public void evict(String postId) {
+        if (postId == null) {
+            return;
+        }
+        redisTemplate.delete(SUMMARY_PREFIX + postId);
+    }
+
+    public void evictAll(Collection<String> postIds) {
+        if (postIds == null || postIds.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        for (String postId : postIds) {
+            keys.add(SUMMARY_PREFIX + postId);
+        }
+        redisTemplate.delete(keys);
+    }
+}
@@ -0,0 +1,16 @@
+package com.bettercallxiaojin.home.cache;
+
+import com.bettercallxiaojin.home.common.Constant.CacheTypeConstant;
+import com.bettercallxiaojin.home.pojo.VO.ReplyVO;
+import org.springframework.stereotype.Component;
+
+/**
+ * 评论下的回复分页，以评论ID为单位失效
+ */
+@Component
+public class ReplyPageCache extends SharedPageCache<ReplyVO> {
+
+    public ReplyPageCache(CacheInvalidationBus cacheInvalidationBus) {
+        super(CacheTypeConstant.REPLY_PAGES, cacheInvalidationBus);
+    }
+}
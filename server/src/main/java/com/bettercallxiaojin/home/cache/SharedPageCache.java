@@ -0,0 +1,61 @@
+package com.bettercallxiaojin.home.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 按所属对象（帖子、评论）缓存与浏览者无关的分页结果，所属对象下有任何写入时整体失效
+ * 缓存中的列表是共享的，调用方需要复制后再叠加 isLike、isCreator 等个性化字段
+ * 每个所属对象有一个代号，失效时换新代号，旧代号下的分页不会再被读到，随容量淘汰或过期
+ */
+public abstract class SharedPageCache<T> {
+
+    public static final int MAX_PAGE_SIZE = 50;
+    // 只缓存前几页，更深的翻页直接查库
+    private static final int MAX_CACHED_PAGE = 20;
+    private static final Duration TTL = Duration.ofSeconds(30);
+
+    private final String type;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    private final AtomicLong generationSequence = new AtomicLong();
+    // 所属对象ID -> 代号
+    private final Cache<String, Long> generations = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterAccess(TTL)
+            .build();
+    // 所属对象ID:代号:pageNum:pageSize -> 分页结果
+    private final Cache<String, List<T>> pages = Caffeine.newBuilder()
+            .maximumSize(20_000)
+            .expireAfterWrite(TTL)
+            .build();
+
+    protected SharedPageCache(String type, CacheInvalidationBus cacheInvalidationBus) {
+        this.type = type;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        cacheInvalidationBus.subscribe(type, generations::invalidate);
+    }
+
+    public static int clampPageSize(Integer pageSize) {
+        return Math.min(Math.max(pageSize, 1), MAX_PAGE_SIZE);
+    }
+
+    public List<T> get(String ownerId, int pageNum, int pageSize, Supplier<List<T>> loader) {
+        if (pageNum > MAX_CACHED_PAGE || pageSize > MAX_PAGE_SIZE) {
+            return loader.get();
+        }
+        // 新代号取全局递增序号，代号被淘汰后重新分配也不会和旧的分页重名
+        long generation = generations.get(ownerId, k -> generationSequence.incrementAndGet());
+        return pages.get(ownerId + ":" + generation + ":" + pageNum + ":" + pageSize, k -> List.copyOf(loader.get()));
+    }
+
+    public void evict(String ownerId) {
+        generations.invalidate(ownerId);
+        cacheInvalidationBus.publish(type, ownerId);
+    }
+}
@@ -0,0 +1,171 @@
+package com.bettercallxiaojin.home.cache;
+
+import com.bettercallxiaojin.home.common.Constant.NotificationConstant;
+import com.bettercallxiaojin.home.mapper.NotificationMapper;
+import com.bettercallxiaojin.home.pojo.VO.UnreadCountVO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 未读通知计数，每个用户一个 Redis hash，field 为通知类型
+ * 新通知写入时 HINCRBY，已读、删除时扣减；hash 只在存在时更新，不存在时从数据库 GROUP BY 重建
+ * hash 的过期时间不随更新刷新，到期后自动和数据库对账一次
+ * 重建前先写一个加载标记，查库期间有计数更新会删除标记，这次加载的结果就不写回 Redis，避免漏掉或重复计算
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class UnreadCounterCache {
+
+    public static final int[] TYPES = {
+            NotificationConstant.LIKE, NotificationConstant.FOLLOW, NotificationConstant.COMMENT, NotificationConstant.REPLY
+    };
+
+    private static final String UNREAD_PREFIX = "notification:unread:";
+    private static final String LOADING_PREFIX = "notification:unread:loading:";
+    private static final Duration LOADING_TTL = Duration.ofSeconds(30);
+    private static final Duration RECONCILE_TTL = Duration.ofMinutes(10);
+
+    // ARGV 为 field、增量交替排列；只在 hash 已经存在时更新，计数不会小于 0
+    // hash 不存在时删除加载标记，正在进行的加载不再写回
+    private static final RedisScript<Long> INCR_IF_EXISTS = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then redis.call('DEL', KEYS[2]) return 0 end " +
+            "for i = 1, #ARGV, 2 do " +
+            "  if redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1]) < 0 then redis.call('HSET', KEYS[1], ARGV[i], 0) end " +
+            "end " +
+            "return 1",
+            Long.class);
+
+    // 加载标记还是自己的（期间没有计数更新）并且 hash 不存在时才写入；ARGV 为 token、过期秒数，之后 field、值交替排列
+    private static final RedisScript<Long> STORE_IF_UNCHANGED = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[2]) ~= ARGV[1] then return 0 end " +
+            "redis.call('DEL', KEYS[2]) " +
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+            "for i = 3, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[2]) " +
+            "return 1",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final NotificationMapper notificationMapper;
+
+    /**
+     * @return 通知类型到未读数的映射，包含所有类型
+     */
+    public Map<Integer, Integer> getAll(String userId) {
+        String key = UNREAD_PREFIX + userId;
+        try {
+            Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+            if (!entries.isEmpty()) {
+                Map<Integer, Integer> counts = new HashMap<>();
+                for (int type : TYPES) {
+                    Object value = entries.get(String.valueOf(type));
+                    counts.put(type, value == null ? 0 : Integer.parseInt(value.toString()));
+                }
+                return counts;
+            }
+        } catch (Exception e) {
+            log.warn("read unread counters failed, user: {}, error: {}", userId, e.getMessage());
+            return load(userId);
+        }
+
+        String loadingKey = LOADING_PREFIX + userId;
+        String token = UUID.randomUUID().toString();
+        boolean marked;
+        try {
+            redisTemplate.opsForValue().set(loadingKey, token, LOADING_TTL);
+            marked = true;
+        } catch (Exception e) {
+            log.warn("mark unread counters loading failed, user: {}, error: {}", userId, e.getMessage());
+            marked = false;
+        }
+
+        Map<Integer, Integer> counts = load(userId);
+        if (!marked) {
+            return counts;
+        }
+        try {
+            // 所有类型都写入，未读数为 0 的也写，hash 存在即表示已加载
+            List<String> args = new ArrayList<>();
+            args.add(token);
+            args.add(String.valueOf(RECONCILE_TTL.toSeconds()));
+            counts.forEach((type, count) -> {
+                args.add(String.valueOf(type));
+                args.add(String.valueOf(count));
+            });
+            redisTemplate.execute(STORE_IF_UNCHANGED, List.of(key, loadingKey), args.toArray());
+        } catch (Exception e) {
+            log.warn("cache unread counters failed, user: {}, error: {}", userId, e.getMessage());
+        }
+        return counts;
+    }
+
+    /**
+     * 角标：评论和回复合并为一个
+     */
+    public UnreadCountVO getBadges(String userId) {
+        Map<Integer, Integer> counts = getAll(userId);
+
+        UnreadCountVO unreadCountVO = new UnreadCountVO();
+        unreadCountVO.setLike(counts.getOrDefault(NotificationConstant.LIKE, 0));
+        unreadCountVO.setFollow(counts.getOrDefault(NotificationConstant.FOLLOW, 0));
+        unreadCountVO.setComment(counts.getOrDefault(NotificationConstant.COMMENT, 0) + counts.getOrDefault(NotificationConstant.REPLY, 0));
+        unreadCountVO.setAll(unreadCountVO.getLike() + unreadCountVO.getFollow() + unreadCountVO.getComment());
+        return unreadCountVO;
+    }
+
+    /**
+     * @param deltas 通知类型到增量的映射
+     */
+    public void increment(String userId, Map<Integer, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        List<String> args = new ArrayList<>();
+        deltas.forEach((type, delta) -> {
+            args.add(String.valueOf(type));
+            args.add(String.valueOf(delta));
+        });
+        try {
+            redisTemplate.execute(INCR_IF_EXISTS, List.of(UNREAD_PREFIX + userId, LOADING_PREFIX + userId), args.toArray());
+        } catch (Exception e) {
+            // 计数更新失败时直接删除，下次读取从数据库重建
+            log.warn("update unread counters failed, user: {}, error: {}", userId, e.getMessage());
+            evict(userId);
+        }
+    }
+
+    public void increment(String userId, int type, int delta) {
+        increment(userId, Map.of(type, delta));
+    }
+
+    public void evict(String userId) {
+        try {
+            redisTemplate.delete(List.of(UNREAD_PREFIX + userId, LOADING_PREFIX + userId));
+        } catch (Exception e) {
+            log.warn("evict unread counters failed, user: {}, error: {}", userId, e.getMessage());
+        }
+    }
+
+    private Map<Integer, Integer> load(String userId) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (int type : TYPES) {
+            counts.put(type, 0);
+        }
+        for (Map<String, Object> row : notificationMapper.countUnreadGroupByType(userId)) {
+            counts.put(((Number) row.get("type")).intValue(), ((Number) row.get("count")).intValue());
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,206 @@
+package com.bettercallxiaojin.home.cache;
+
+import com.bettercallxiaojin.home.common.Constant.CacheTypeConstant;
+import com.bettercallxiaojin.home.mapper.LikeMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 每个用户每种目标类型一个 Redis SET，成员为点过赞的目标ID，首次读取时从 like_record 整体加载
+ * 前面再加一层进程内布隆过滤器，绝大多数“未点赞”的判断不需要访问 Redis
+ * 布隆过滤器只增不减：点赞时本节点直接加入并广播让其它节点丢弃重建，取消点赞只影响 Redis 中的集合
+ * 过滤器构建期间如果有新的点赞或失效，构建结果可能缺少这个目标，用版本号判断后丢弃
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class UserLikeSetCache {
+
+    private static final String SET_PREFIX = "like:set:";
+    // 哨兵成员，存在说明集合已经从数据库完整加载
+    private static final String LOADED = "#";
+    private static final Duration SET_TTL = Duration.ofHours(24);
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final int MIN_EXPECTED_INSERTIONS = 100;
+
+    private final StringRedisTemplate redisTemplate;
+    private final LikeMapper likeMapper;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    private final Cache<String, BloomFilter<String>> filters = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
+
+    // 每次点赞或失效都给 key 分配新的版本号，构建过滤器前后版本不同说明期间有变化
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final Cache<String, Long> versions = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofMinutes(5))
+            .build();
+
+    @PostConstruct
+    public void subscribeInvalidation() {
+        cacheInvalidationBus.subscribe(CacheTypeConstant.LIKE_FILTER, this::invalidateFilter);
+    }
+
+    /**
+     * @return targetIds 中当前用户点过赞的部分
+     */
+    public Set<String> likedAmong(String userId, Integer targetType, Collection<String> targetIds) {
+        String key = SET_PREFIX + userId + ":" + targetType;
+
+        BloomFilter<String> filter = filters.getIfPresent(key);
+        List<String> candidates = new ArrayList<>();
+        for (String targetId : targetIds) {
+            if (filter == null || filter.mightContain(targetId)) {
+                candidates.add(targetId);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Set.of();
+        }
+
+        // 哨兵和候选一起 SMISMEMBER，一次往返同时确认集合是否已加载
+        Object[] members = new Object[candidates.size() + 1];
+        members[0] = LOADED;
+        for (int i = 0; i < candidates.size(); i++) {
+            members[i + 1] = candidates.get(i);
+        }
+        Map<Object, Boolean> hits = redisTemplate.opsForSet().isMember(key, members);
+
+        if (hits == null || !Boolean.TRUE.equals(hits.get(LOADED))) {
+            Set<String> liked = load(key, userId, targetType);
+            Set<String> result = new HashSet<>();
+            for (String candidate : candidates) {
+                if (liked.contains(candidate)) {
+                    result.add(candidate);
+                }
+            }
+            return result;
+        }
+
+        if (filter == null) {
+            Long version = versions.getIfPresent(key);
+            buildFilter(key, version, redisTemplate.opsForSet().members(key));
+        }
+
+        Set<String> result = new HashSet<>();
+        for (String candidate : candidates) {
+            if (Boolean.TRUE.equals(hits.get(candidate))) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    public void add(String userId, Integer targetType, String targetId) {
+        String key = SET_PREFIX + userId + ":" + targetType;
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                stringConnection.sAdd(key, targetId);
+                stringConnection.expire(key, SET_TTL.toSeconds());
+                return null;
+            });
+        } catch (Exception e) {
+            // 集合里缺少这次点赞，删掉让下次读取从数据库重新加载
+            log.warn("add to like set failed: {}", e.getMessage());
+            discard(key);
+            return;
+        }
+
+        // 和过滤器构建的写入互斥，正在构建的过滤器看到版本变化后会被丢弃
+        filters.asMap().compute(key, (k, filter) -> {
+            versions.put(k, versionSequence.incrementAndGet());
+            if (filter != null) {
+                filter.put(targetId);
+            }
+            return filter;
+        });
+        // 其它节点的过滤器里没有这个目标，会误判为未点赞，需要丢弃
+        cacheInvalidationBus.publish(CacheTypeConstant.LIKE_FILTER, key);
+    }
+
+    public void remove(String userId, Integer targetType, String targetId) {
+        String key = SET_PREFIX + userId + ":" + targetType;
+        try {
+            redisTemplate.opsForSet().remove(key, targetId);
+        } catch (Exception e) {
+            // 集合里残留已取消的点赞，同样删掉重新加载
+            log.warn("remove from like set failed: {}", e.getMessage());
+            discard(key);
+        }
+    }
+
+    private void discard(String key) {
+        try {
+            redisTemplate.delete(key);
+        } catch (Exception e) {
+            log.warn("delete like set failed: {}", e.getMessage());
+        }
+        invalidateFilter(key);
+        cacheInvalidationBus.publish(CacheTypeConstant.LIKE_FILTER, key);
+    }
+
+    private void invalidateFilter(String key) {
+        filters.asMap().compute(key, (k, filter) -> {
+            versions.put(k, versionSequence.incrementAndGet());
+            return null;
+        });
+    }
+
+    private Set<String> load(String key, String userId, Integer targetType) {
+        // 先取版本再查库，之后的点赞会改变版本
+        Long version = versions.getIfPresent(key);
+        List<String> targetIds = likeMapper.selectTargetIdsByUser(userId, targetType);
+
+        // 点赞时可能已经写入了未加载的集合，这里只追加，不覆盖
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            List<String> members = new ArrayList<>(targetIds);
+            members.add(LOADED);
+            stringConnection.sAdd(key, members.toArray(new String[0]));
+            stringConnection.expire(key, SET_TTL.toSeconds());
+            return null;
+        });
+
+        buildFilter(key, version, targetIds);
+        return new HashSet<>(targetIds);
+    }
+
+    private void buildFilter(String key, Long version, Collection<String> targetIds) {
+        if (targetIds == null) {
+            return;
+        }
+        // 预留增长空间，之后的点赞直接加入过滤器
+        BloomFilter<String> filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                Math.max(targetIds.size() * 2, MIN_EXPECTED_INSERTIONS), FALSE_POSITIVE_RATE);
+        for (String targetId : targetIds) {
+            filter.put(targetId);
+        }
+        // 构建期间有点赞或失效就不缓存，下次读取重新构建
+        filters.asMap().compute(key, (k, existing) ->
+                Objects.equals(version, versions.getIfPresent(k)) ? filter : existing);
+    }
+}
@@ -0,0 +1,12 @@
+package com.bettercallxiaojin.home.common.Constant;
+
+public class CacheTypeConstant {
+    public static final String USER = "user";
+    public static final String POST = "post";
+    public static final String AUTHOR_POSTS = "author-posts";
+    public static final String COMMENT_PAGES = "comment-pages";
+    public static final String REPLY_PAGES = "reply-pages";
+    public static final String LIKE_FILTER = "like-filter";
+    // 不是失效，而是通知其它节点某个帖子切换为分片计数
+    public static final String COUNTER_SHARD = "counter-shard";
+}
@@ -5,4 +5,7 @@ public class NotificationConstant {
     public static final int FOLLOW = 2;
     public static final int COMMENT = 3;
     public static final int REPLY = 4;
+
+    // 删除记录的保留天数，更早的水位无法增量同步
+    public static final int TOMBSTONE_RETENTION_DAYS = 7;
 }
@@ -0,0 +1,39 @@
+package com.bettercallxiaojin.home.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public class CursorUtil {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * 生成游标，内容为 排序键|id，对客户端不透明
+     * @param sortKey 排序字段的值（created_at 或 like_count）
+     * @param id 最后一条记录的ID
+     */
+    public static String encode(Object sortKey, String id) {
+        String raw = sortKey + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标
+     * @return [排序键, id]，游标为空时返回 null（表示第一页）
+     */
+    public static String[] decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int index = raw.indexOf(SEPARATOR);
+            if (index <= 0 || index == raw.length() - 1) {
+                throw new IllegalArgumentException();
+            }
+            return new String[]{raw.substring(0, index), raw.substring(index + 1)};
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("invalid cursor");
+        }
+    }
+}
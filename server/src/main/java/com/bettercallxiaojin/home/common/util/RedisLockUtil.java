@@ -0,0 +1,42 @@
+package com.bettercallxiaojin.home.common.util;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+public class RedisLockUtil {
+
+    // 只删除自己持有的锁，避免锁过期后误删其它实例的锁
+    private static final RedisScript<Long> UNLOCK = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+    private static final RedisScript<Long> RENEW = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end return 0",
+            Long.class);
+
+    /**
+     * @return 加锁成功时返回持有者令牌，否则返回 null
+     */
+    public static String tryLock(StringRedisTemplate redisTemplate, String key, Duration ttl) {
+        String token = UUID.randomUUID().toString();
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(key, token, ttl);
+        return Boolean.TRUE.equals(locked) ? token : null;
+    }
+
+    /**
+     * 续期自己持有的锁
+     * @return 锁已经不属于自己时返回 false
+     */
+    public static boolean renew(StringRedisTemplate redisTemplate, String key, String token, Duration ttl) {
+        Long renewed = redisTemplate.execute(RENEW, List.of(key), token, String.valueOf(ttl.toMillis()));
+        return renewed != null && renewed == 1;
+    }
+
+    public static void unlock(StringRedisTemplate redisTemplate, String key, String token) {
+        redisTemplate.execute(UNLOCK, List.of(key), token);
+    }
+}
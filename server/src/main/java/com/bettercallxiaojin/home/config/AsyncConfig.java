@@ -0,0 +1,43 @@
+package com.bettercallxiaojin.home.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@EnableAsync
+@Slf4j
+public class AsyncConfig {
+
+    /**
+     * 关注收件箱扇出使用的线程池，队列满时直接丢弃，收件箱会在下次重建时修正
+     */
+    @Bean("feedExecutor")
+    public ThreadPoolTaskExecutor feedExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("feed-");
+        executor.setRejectedExecutionHandler((task, pool) -> log.warn("feed executor is full, task discarded"));
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        return executor;
+    }
+
+    /**
+     * SSE 推送使用的线程池，发送会阻塞，不能占用 Redis 监听线程和调度线程；队列满时丢弃，客户端下次收到角标时修正
+     */
+    @Bean("pushExecutor")
+    public ThreadPoolTaskExecutor pushExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(10_000);
+        executor.setThreadNamePrefix("push-");
+        executor.setRejectedExecutionHandler((task, pool) -> log.warn("push executor is full, task discarded"));
+        return executor;
+    }
+}
@@ -0,0 +1,24 @@
+package com.bettercallxiaojin.home.config;
+
+import com.bettercallxiaojin.home.cache.CacheInvalidationBus;
+import com.bettercallxiaojin.home.push.NotificationPushHub;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+public class RedisConfig {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       CacheInvalidationBus cacheInvalidationBus,
+                                                                       NotificationPushHub notificationPushHub) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheInvalidationBus, new ChannelTopic(CacheInvalidationBus.CHANNEL));
+        container.addMessageListener(notificationPushHub, new ChannelTopic(NotificationPushHub.CHANNEL));
+        return container;
+    }
+}
@@ -31,8 +31,9 @@ public class CommentController {
     @Operation(summary = "创建评论", description = "对帖子发表评论或回复其他评论")
     public Response<CommentVO> createComment(@RequestBody @Valid AddCommentDTO addCommentDTO) {
         try {
+            CommentVO commentVO = commentService.createComment(addCommentDTO.getPostId(), addCommentDTO.getContent());
             notificationService.updateComment(addCommentDTO.getContent(), addCommentDTO.getPostId());
-            return Response.success(commentService.createComment(addCommentDTO.getPostId(), addCommentDTO.getContent()));
+            return Response.success(commentVO);
         } catch (Exception e) {
             return Response.error(e.getMessage());
         }
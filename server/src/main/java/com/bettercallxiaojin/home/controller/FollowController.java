@@ -29,8 +29,8 @@ public class FollowController {
             return Response.error("id is empty or null");
         }
         try {
-            notificationService.updateFollow(followId);
             followService.follow(followId);
+            notificationService.updateFollow(followId);
             return Response.success();
         } catch (Exception e) {
             return Response.error(e.getMessage());
@@ -45,8 +45,8 @@ public class FollowController {
             return Response.error("id is empty or null");
         }
         try {
-            notificationService.deleteFollow(followId);
             followService.unfollow(followId);
+            notificationService.deleteFollow(followId);
             return Response.success();
         } catch (Exception e) {
             return Response.error(e.getMessage());
@@ -3,15 +3,19 @@ package com.bettercallxiaojin.home.controller;
 
 import com.bettercallxiaojin.home.common.BaseContext;
 import com.bettercallxiaojin.home.pojo.DTO.LikeDTO;
+import com.bettercallxiaojin.home.pojo.DTO.LikeStatusBatchDTO;
 import com.bettercallxiaojin.home.pojo.entity.Response;
 import com.bettercallxiaojin.home.service.LikeService;
-import com.bettercallxiaojin.home.service.NotificationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
 
 @RestController
 @RequestMapping("/like")
@@ -20,13 +24,11 @@ import org.springframework.web.bind.annotation.*;
 public class LikeController {
 
     private final LikeService likeService;
-    private final NotificationService notificationService;
 
     @PostMapping("")
-    @Operation(summary = "点赞", description = "对帖子或评论进行点赞")
+    @Operation(summary = "点赞", description = "对帖子或评论进行点赞，已点赞时返回 false")
     public Response<Boolean> like(@RequestBody @Valid LikeDTO likeDTO) {
         try {
-            notificationService.updateLike(likeDTO.getTargetId(), likeDTO.getTargetType());
             return Response.success(likeService.like(likeDTO.getTargetType(), likeDTO.getTargetId()));
         } catch (Exception e) {
             return Response.error(e.getMessage());
@@ -35,10 +37,9 @@ public class LikeController {
 
 
     @DeleteMapping("/cancel")
-    @Operation(summary = "取消点赞", description = "取消对帖子或评论的点赞")
+    @Operation(summary = "取消点赞", description = "取消对帖子或评论的点赞，未点赞时返回 false")
     public Response<Boolean> unlike(@RequestBody @Valid LikeDTO likeDTO) {
         try {
-            notificationService.deleteLike(likeDTO.getTargetId(), likeDTO.getTargetType());
             return Response.success(likeService.unlike(likeDTO.getTargetType(), likeDTO.getTargetId()));
         } catch (Exception e) {
             return Response.error(e.getMessage());
@@ -55,4 +56,21 @@ public class LikeController {
             return Response.error(e.getMessage());
         }
     }
+
+
+    @PostMapping("/status/batch")
+    @Operation(summary = "批量检查点赞状态", description = "一次检查当前用户对同一类型的多个帖子或评论的点赞状态")
+    public Response<Map<String, Boolean>> checkLikedBatch(@RequestBody @Valid LikeStatusBatchDTO likeStatusBatchDTO) {
+        try {
+            Set<String> liked = likeService.checkLikeStatusBatch(likeStatusBatchDTO.getTargetType(), likeStatusBatchDTO.getTargetIds());
+
+            Map<String, Boolean> result = new LinkedHashMap<>();
+            for (String targetId : likeStatusBatchDTO.getTargetIds()) {
+                result.put(targetId, liked.contains(targetId));
+            }
+            return Response.success(result);
+        } catch (Exception e) {
+            return Response.error(e.getMessage());
+        }
+    }
 }
\ No newline at end of file
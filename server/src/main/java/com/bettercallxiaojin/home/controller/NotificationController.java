@@ -1,21 +1,32 @@
 package com.bettercallxiaojin.home.controller;
 
+import com.bettercallxiaojin.home.common.BaseContext;
 import com.bettercallxiaojin.home.common.Constant.NotificationConstant;
+import com.bettercallxiaojin.home.pojo.DTO.NotificationReadDTO;
+import com.bettercallxiaojin.home.pojo.VO.NotificationSyncVO;
 import com.bettercallxiaojin.home.pojo.VO.NotificationVO;
 import com.bettercallxiaojin.home.pojo.VO.SimplePostVO;
 import com.bettercallxiaojin.home.pojo.VO.SimpleUserVO;
+import com.bettercallxiaojin.home.pojo.VO.UnreadCountVO;
 import com.bettercallxiaojin.home.pojo.entity.Notification;
 import com.bettercallxiaojin.home.pojo.entity.PageQuery;
 import com.bettercallxiaojin.home.pojo.entity.Response;
+import com.bettercallxiaojin.home.push.NotificationPushHub;
 import com.bettercallxiaojin.home.service.NotificationService;
 import com.bettercallxiaojin.home.service.RecentViewService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -26,6 +37,27 @@ import java.util.List;
 public class NotificationController {
 
     private final NotificationService notificationService;
+    private final NotificationPushHub notificationPushHub;
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "订阅通知推送", description = "SSE 长连接，推送 notification（新通知）和 badge（未读数）事件，连接数已满时返回 503，客户端应退回轮询")
+    public SseEmitter stream() {
+        SseEmitter emitter = notificationPushHub.subscribe(BaseContext.getUserId());
+        if (emitter == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "too many connections");
+        }
+        return emitter;
+    }
+
+    @GetMapping("/count-unread-badges")
+    @Operation(summary = "获得所有未读角标", description = "一次返回全部、点赞、关注、评论回复的未读数字")
+    public Response<UnreadCountVO> countUnreadBadges() {
+        try {
+            return Response.success(notificationService.countUnreadAll());
+        } catch (Exception e) {
+            return Response.error(e.getMessage());
+        }
+    }
 
     @GetMapping("/count-all-unread")
     @Operation(summary = "获得未读消息的数字", description = "获得未读消息的数字")
@@ -61,9 +93,7 @@ public class NotificationController {
     @Operation(summary = "获得未读评论回复的数字", description = "获得未读评论回复的数字")
     public Response<Integer> countCommentUnread() {
         try {
-            return Response.success(
-                    notificationService.countUnread(NotificationConstant.COMMENT) + notificationService.countUnread(NotificationConstant.REPLY)
-            );
+            return Response.success(notificationService.countUnreadAll().getComment());
         } catch (Exception e) {
             return Response.error(e.getMessage());
         }
@@ -80,19 +110,45 @@ public class NotificationController {
     }
 
     @PostMapping("/read-batch")
-    @Operation(summary = "全部设为已读", description = "把特定Type的通知全部设为已读")
-    public Response<Boolean> readBatch(Integer type) {
+    @Operation(summary = "全部设为已读", description = "把特定Type的通知全部设为已读；传入readUpTo时只把不晚于该时间的通知设为已读")
+    public Response<Boolean> readBatch(Integer type, String readUpTo) {
+        try {
+            return Response.success(notificationService.readBatch(type, readUpTo));
+        } catch (Exception e) {
+            return Response.error(e.getMessage());
+        }
+    }
+
+    @PostMapping("/read-ids")
+    @Operation(summary = "批量设为已读", description = "把指定的多个通知设为已读，返回实际变为已读的数量")
+    public Response<Integer> readByIds(@RequestBody @Valid NotificationReadDTO notificationReadDTO) {
+        try {
+            return Response.success(notificationService.readByIds(notificationReadDTO.getIds()));
+        } catch (Exception e) {
+            return Response.error(e.getMessage());
+        }
+    }
+
+    @GetMapping("/since")
+    @Operation(summary = "增量同步通知", description = "返回水位之后新增或更新的通知和被删除的通知ID，resync为true时需要重新拉取完整列表；返回的watermark用于下次同步")
+    public Response<NotificationSyncVO> getNotificationSince(String watermark) {
+        if (watermark == null || watermark.isEmpty()) {
+            return Response.error("watermark cannot be empty");
+        }
         try {
-            return Response.success(notificationService.readBatch(type));
+            return Response.success(notificationService.getNotificationSince(watermark));
         } catch (Exception e) {
             return Response.error(e.getMessage());
         }
     }
 
     @GetMapping("/list-like")
-    @Operation(summary = "获取点赞通知", description = "获取所有点赞通知")
-    public Response<List<NotificationVO>> getLikeNotification() {
+    @Operation(summary = "获取点赞通知", description = "获取所有点赞通知；传入cursor时使用游标分页并返回nextCursor")
+    public Response<Object> getLikeNotification(PageQuery pageQuery) {
         try {
+            if (pageQuery.getCursor() != null) {
+                return Response.success(notificationService.getLikeNotificationByCursor(pageQuery.getCursor(), pageQuery.getPageSize()));
+            }
             return Response.success(notificationService.getLikeNotification());
         } catch (Exception e) {
             return Response.error(e.getMessage());
@@ -100,9 +156,12 @@ public class NotificationController {
     }
 
     @GetMapping("/list-follow")
-    @Operation(summary = "获取关注通知", description = "获取所有关注通知")
-    public Response<List<NotificationVO>> getFollowNotification() {
+    @Operation(summary = "获取关注通知", description = "获取所有关注通知；传入cursor时使用游标分页并返回nextCursor")
+    public Response<Object> getFollowNotification(PageQuery pageQuery) {
         try {
+            if (pageQuery.getCursor() != null) {
+                return Response.success(notificationService.getFollowNotificationByCursor(pageQuery.getCursor(), pageQuery.getPageSize()));
+            }
             return Response.success(notificationService.getFollowNotification());
         } catch (Exception e) {
             return Response.error(e.getMessage());
@@ -110,9 +169,12 @@ public class NotificationController {
     }
 
     @GetMapping("/list-commentAndReply")
-    @Operation(summary = "获取评论通知", description = "获取所有评论和回复通知")
-    public Response<List<NotificationVO>> getCommentNotification() {
+    @Operation(summary = "获取评论通知", description = "获取所有评论和回复通知；传入cursor时使用游标分页并返回nextCursor")
+    public Response<Object> getCommentNotification(PageQuery pageQuery) {
         try {
+            if (pageQuery.getCursor() != null) {
+                return Response.success(notificationService.getCommentNotificationByCursor(pageQuery.getCursor(), pageQuery.getPageSize()));
+            }
             return Response.success(notificationService.getCommentNotification());
         } catch (Exception e) {
             return Response.error(e.getMessage());
@@ -26,6 +26,8 @@ public class PostController {
     private final PostService postService;
     private final RecentViewService recentViewService;
 
+    private static final String HOT_SORT = "hot";
+
 
     @PostMapping("/create")
     @Operation(summary = "创建帖子", description = "创建新帖子，需要提供标题、内容和可见性设置")
@@ -76,12 +78,15 @@ public class PostController {
 
 
     @GetMapping("/list/byUser")
-    @Operation(summary = "获取用户发布的帖子列表", description = "获取指定用户发布的帖子列表，支持分页")
-    public Response<List<SimplePostVO>> getUserPost(PageQuery pageQuery) {
+    @Operation(summary = "获取用户发布的帖子列表", description = "获取指定用户发布的帖子列表，支持分页；传入cursor时使用游标分页并返回nextCursor")
+    public Response<Object> getUserPost(PageQuery pageQuery) {
         if  (pageQuery.getId() == null) {
             return Response.error("id cannot be empty");
         }
         try {
+            if (pageQuery.getCursor() != null) {
+                return Response.success(postService.getUserPostByCursor(pageQuery.getId(), pageQuery.getCursor(), pageQuery.getPageSize()));
+            }
             return Response.success(postService.getUserPost(pageQuery.getId(), pageQuery.getPageNum(),pageQuery.getPageSize()));
         } catch (Exception e) {
             return Response.error(e.getMessage());
@@ -89,9 +94,12 @@ public class PostController {
     }
 
     @GetMapping("/list/all")
-    @Operation(summary = "获取所有帖子", description = "获取当前用户可见的所有帖子列表")
-    public Response<List<SimplePostVO>> getVisiblePost(PageQuery pageQuery) {
+    @Operation(summary = "获取所有帖子", description = "获取当前用户可见的所有帖子列表；传入cursor时使用游标分页并返回nextCursor")
+    public Response<Object> getVisiblePost(PageQuery pageQuery) {
         try {
+            if (pageQuery.getCursor() != null) {
+                return Response.success(postService.getVisiblePostByCursor(pageQuery.getCursor(), pageQuery.getPageSize()));
+            }
             return Response.success(postService.getVisiblePost(pageQuery.getPageNum(),pageQuery.getPageSize()));
         } catch (Exception e) {
             return Response.error(e.getMessage());
@@ -99,9 +107,15 @@ public class PostController {
     }
 
     @GetMapping("/list/favorite")
-    @Operation(summary = "获取点赞最多帖子", description = "获取当前用户可见的点赞最多帖子列表")
-    public Response<List<SimplePostVO>> getFavoritePost(PageQuery pageQuery) {
+    @Operation(summary = "获取点赞最多帖子", description = "获取当前用户可见的点赞最多帖子列表；传入cursor时使用游标分页并返回nextCursor；sort=hot时按热度排行")
+    public Response<Object> getFavoritePost(PageQuery pageQuery) {
         try {
+            if (HOT_SORT.equals(pageQuery.getSort())) {
+                return Response.success(postService.getHotPost(pageQuery.getPageNum(), pageQuery.getPageSize()));
+            }
+            if (pageQuery.getCursor() != null) {
+                return Response.success(postService.getFavoritePostByCursor(pageQuery.getCursor(), pageQuery.getPageSize()));
+            }
             return Response.success(postService.getFavoritePost(pageQuery.getPageNum(),pageQuery.getPageSize()));
         } catch (Exception e) {
             return Response.error(e.getMessage());
@@ -110,9 +124,12 @@ public class PostController {
 
 
     @GetMapping("/list/follow")
-    @Operation(summary = "获取关注帖子", description = "获取收藏用户的公开帖子列表")
-    public Response<List<SimplePostVO>> getFollowPost(PageQuery pageQuery) {
+    @Operation(summary = "获取关注帖子", description = "获取收藏用户的公开帖子列表；传入cursor时使用游标分页并返回nextCursor")
+    public Response<Object> getFollowPost(PageQuery pageQuery) {
         try {
+            if (pageQuery.getCursor() != null) {
+                return Response.success(postService.getFollowPostByCursor(pageQuery.getCursor(), pageQuery.getPageSize()));
+            }
             return Response.success(postService.getFollowPost(pageQuery.getPageNum(),pageQuery.getPageSize()));
         } catch (Exception e) {
             return Response.error(e.getMessage());
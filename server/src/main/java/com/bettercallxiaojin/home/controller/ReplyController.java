@@ -32,12 +32,13 @@ public class ReplyController {
     @Operation(summary = "创建回复", description = "对帖子发表回复或回复其他评论")
     public Response<ReplyVO> createReply(@RequestBody @Valid AddReplyDTO addReplyDTO) {
         try {
+            ReplyVO replyVO = replyService.createReply(addReplyDTO.getCommentId(), addReplyDTO.getReplyTo(), addReplyDTO.getContent());
             if (addReplyDTO.getReplyTo() != null) {
                 notificationService.updateReply(addReplyDTO.getContent(), addReplyDTO.getReplyTo(), TargetTypeConstant.REPLY);
             } else {
                 notificationService.updateReply(addReplyDTO.getContent(), addReplyDTO.getCommentId(), TargetTypeConstant.COMMENT);
             }
-            return Response.success(replyService.createReply(addReplyDTO.getCommentId(), addReplyDTO.getReplyTo(), addReplyDTO.getContent()));
+            return Response.success(replyVO);
         } catch (Exception e) {
             return Response.error(e.getMessage());
         }
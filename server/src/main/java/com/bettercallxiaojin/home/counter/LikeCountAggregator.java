@@ -0,0 +1,445 @@
+package com.bettercallxiaojin.home.counter;
+
+import com.bettercallxiaojin.home.cache.CommentPageCache;
+import com.bettercallxiaojin.home.cache.PostDetailCache;
+import com.bettercallxiaojin.home.cache.PostSummaryCache;
+import com.bettercallxiaojin.home.cache.ReplyPageCache;
+import com.bettercallxiaojin.home.common.Constant.TargetTypeConstant;
+import com.bettercallxiaojin.home.mapper.CommentMapper;
+import com.bettercallxiaojin.home.mapper.LikeFlushLogMapper;
+import com.bettercallxiaojin.home.mapper.PostMapper;
+import com.bettercallxiaojin.home.mapper.ReplyMapper;
+import com.bettercallxiaojin.home.mapper.UserMapper;
+import com.bettercallxiaojin.home.pojo.entity.Comment;
+import com.bettercallxiaojin.home.pojo.entity.Post;
+import com.bettercallxiaojin.home.pojo.entity.Reply;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 点赞数写后合并：点赞只累加到内存中按目标区分的 LongAdder，由定时任务按表合并成多行 UPDATE 一次落库，
+ * 避免热门帖子的每次点赞都去抢同一行的行锁
+ * 每次累加同时写入本节点的 Redis 日志（见 LikeJournal），进程异常退出后回放，未落库的增量不会丢失
+ * 每批增量带一个 flush id，和计数在同一个事务中写入 like_flush_log，重试和回放同一批次不会重复累加
+ * 读取点赞数时需要加上 pendingDelta，返回的数字才是准确的
+ * 节点ID未配置时每次启动随机生成；节点租约过期（进程退出）后，其它节点或重启后的自己会回放它留下的日志
+ * 落库后 pendingDelta 归零，所以所有缓存了 like_count 的缓存都要在落库后失效，否则读到的点赞数会回退
+ */
+@Component
+@Slf4j
+public class LikeCountAggregator {
+
+    private static final String SEPARATOR = ":";
+    // 单条 UPDATE 的行数上限，避免超过 PostgreSQL 的参数个数限制
+    private static final int BATCH_SIZE = 1000;
+    private static final long LEASE_RETRY_MS = 1000;
+    private static final Duration ORPHAN_CHECK_INTERVAL = Duration.ofMinutes(1);
+    // 回放只会发生在日志残留期间，落库记录保留足够久即可
+    private static final Duration FLUSH_LOG_RETENTION = Duration.ofDays(30);
+
+    private final PostMapper postMapper;
+    private final CommentMapper commentMapper;
+    private final ReplyMapper replyMapper;
+    private final UserMapper userMapper;
+    private final LikeFlushLogMapper likeFlushLogMapper;
+    private final LikeJournal likeJournal;
+    private final TransactionTemplate transactionTemplate;
+    private final PostSummaryCache postSummaryCache;
+    private final PostDetailCache postDetailCache;
+    private final CommentPageCache commentPageCache;
+    private final ReplyPageCache replyPageCache;
+    private final PostCounterShards postCounterShards;
+
+    private final String nodeId;
+    // 配置了节点ID时，同一ID的另一个存活实例会和本实例互相回放日志，启动时拒绝
+    private final boolean configuredNodeId;
+    private volatile String leaseToken;
+    private long lastOrphanCheck;
+
+    // 累加时持有读锁，flush 持有写锁交换累加表，交换出来的旧表不会再有写入
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile Map<String, LongAdder> accumulating = new ConcurrentHashMap<>();
+    // 已经交换出来、还没有确认落库的增量和它的 flush id，落库完成之前读取也要算上，落库失败时用同一个 id 重试
+    private volatile Map<String, Long> flushing = Map.of();
+    private volatile String flushId;
+
+    public LikeCountAggregator(PostMapper postMapper,
+                               CommentMapper commentMapper,
+                               ReplyMapper replyMapper,
+                               UserMapper userMapper,
+                               LikeFlushLogMapper likeFlushLogMapper,
+                               LikeJournal likeJournal,
+                               TransactionTemplate transactionTemplate,
+                               PostSummaryCache postSummaryCache,
+                               PostDetailCache postDetailCache,
+                               CommentPageCache commentPageCache,
+                               ReplyPageCache replyPageCache,
+                               PostCounterShards postCounterShards,
+                               @Value("${bettercallxiaojin.node-id:}") String nodeId) {
+        this.postMapper = postMapper;
+        this.commentMapper = commentMapper;
+        this.replyMapper = replyMapper;
+        this.userMapper = userMapper;
+        this.likeFlushLogMapper = likeFlushLogMapper;
+        this.likeJournal = likeJournal;
+        this.transactionTemplate = transactionTemplate;
+        this.postSummaryCache = postSummaryCache;
+        this.postDetailCache = postDetailCache;
+        this.commentPageCache = commentPageCache;
+        this.replyPageCache = replyPageCache;
+        this.postCounterShards = postCounterShards;
+        this.configuredNodeId = nodeId != null && !nodeId.isBlank();
+        this.nodeId = configuredNodeId ? nodeId : UUID.randomUUID().toString();
+    }
+
+    public void add(Integer targetType, String targetId, long delta) {
+        String key = targetType + SEPARATOR + targetId;
+        swapLock.readLock().lock();
+        try {
+            try {
+                likeJournal.append(nodeId, key, delta);
+            } catch (Exception e) {
+                log.warn("journal like delta failed, key: {}, error: {}", key, e.getMessage());
+            }
+            accumulating.computeIfAbsent(key, k -> new LongAdder()).add(delta);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        if (targetType == TargetTypeConstant.POST) {
+            postCounterShards.recordWrite(targetId);
+        }
+    }
+
+    /**
+     * 本节点尚未落库的增量
+     */
+    public long pendingDelta(Integer targetType, String targetId) {
+        String key = targetType + SEPARATOR + targetId;
+        LongAdder adder = accumulating.get(key);
+        long delta = adder == null ? 0 : adder.sum();
+        return delta + flushing.getOrDefault(key, 0L);
+    }
+
+    public Integer withPending(Integer targetType, String targetId, Integer likeCount) {
+        if (likeCount == null) {
+            return null;
+        }
+        return (int) (likeCount + pendingDelta(targetType, targetId));
+    }
+
+    public synchronized void flush() {
+        // 上一批还没有确认落库时先用同一个 flush id 重试，确认之前不切换日志，否则会覆盖掉这一批
+        if (flushId != null && !applyFlushing()) {
+            return;
+        }
+
+        String id = UUID.randomUUID().toString();
+        swapLock.writeLock().lock();
+        try {
+            if (accumulating.isEmpty()) {
+                return;
+            }
+            try {
+                // 日志和累加表一起切换，之后的点赞写入新的日志
+                likeJournal.rotate(nodeId, id);
+            } catch (Exception e) {
+                // 日志没有切换时不能落库，否则日志里留下已经落库的增量，继续累加等下次
+                log.warn("rotate like journal failed, flush skipped: {}", e.getMessage());
+                return;
+            }
+            Map<String, Long> deltas = new HashMap<>();
+            accumulating.forEach((key, adder) -> {
+                long delta = adder.sum();
+                if (delta != 0) {
+                    deltas.put(key, delta);
+                }
+            });
+            flushing = deltas;
+            flushId = id;
+            accumulating = new ConcurrentHashMap<>();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        applyFlushing();
+        drainOrphansPeriodically();
+    }
+
+    /**
+     * 启动时先占用节点租约，再回放自己和其它已退出节点留下的日志，此时还没有请求进来
+     */
+    @PostConstruct
+    public synchronized void replay() throws InterruptedException {
+        try {
+            acquireLease();
+            likeJournal.register(nodeId);
+            replayJournal(nodeId);
+            drainOrphans();
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("replay like journal failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        flush();
+        try {
+            // 日志已经清空时注销，否则留给其它节点回放
+            if (flushId == null && accumulating.isEmpty()) {
+                likeJournal.unregister(nodeId);
+            }
+            if (leaseToken != null) {
+                likeJournal.releaseLease(nodeId, leaseToken);
+            }
+        } catch (Exception e) {
+            log.warn("release like journal failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 单独续期，不受 flush 耗时影响；租约过期会被其它节点当作已退出，回放本节点的日志
+     */
+    public void renewLease() {
+        try {
+            String token = leaseToken;
+            if (token == null) {
+                leaseToken = likeJournal.tryLease(nodeId);
+            } else if (!likeJournal.renewLease(nodeId, token)) {
+                log.error("like journal lease of node {} was taken by another instance", nodeId);
+                leaseToken = likeJournal.tryLease(nodeId);
+            }
+        } catch (Exception e) {
+            log.warn("renew like journal lease failed: {}", e.getMessage());
+        }
+    }
+
+    public void purgeFlushLog() {
+        try {
+            likeFlushLogMapper.deleteBefore(LocalDateTime.now().minus(FLUSH_LOG_RETENTION));
+        } catch (Exception e) {
+            log.warn("purge like flush log failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return 是否已经确认落库
+     */
+    private boolean applyFlushing() {
+        Map<String, Long> deltas = flushing;
+        String id = flushId;
+        try {
+            apply(deltas, id);
+        } catch (Exception e) {
+            log.warn("flush like counts failed, {} targets will retry: {}", deltas.size(), e.getMessage());
+            return false;
+        }
+        // 先去掉 pendingDelta 再失效缓存，重新加载的缓存不会重复加上这一批
+        flushing = Map.of();
+        flushId = null;
+        evictCaches(deltas);
+        try {
+            likeJournal.clearFlushing(nodeId, id);
+        } catch (Exception e) {
+            // 残留的批次已经记入 like_flush_log，下次切换或回放时丢弃
+            log.warn("clear like journal failed: {}", e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * 回放一个节点的日志：先用原来的 flush id 重放残留的 flushing，已经落库时直接跳过，再把 pending 作为新批次落库
+     */
+    private void replayJournal(String node) {
+        LikeJournal.Batch batch = likeJournal.readFlushing(node);
+        if (batch.id() != null) {
+            apply(batch.deltas(), batch.id());
+            evictCaches(batch.deltas());
+        }
+        String id = UUID.randomUUID().toString();
+        if (likeJournal.rotate(node, id)) {
+            Map<String, Long> deltas = likeJournal.readFlushing(node).deltas();
+            apply(deltas, id);
+            evictCaches(deltas);
+            log.info("replayed like journal of node {}, {} targets", node, deltas.size());
+        }
+        likeJournal.clearFlushing(node, id);
+    }
+
+    private void drainOrphansPeriodically() {
+        long now = System.currentTimeMillis();
+        if (now - lastOrphanCheck < ORPHAN_CHECK_INTERVAL.toMillis()) {
+            return;
+        }
+        lastOrphanCheck = now;
+        try {
+            drainOrphans();
+        } catch (Exception e) {
+            log.warn("drain orphaned like journals failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 租约已经过期的节点视为已退出，占用它的租约后回放并注销
+     */
+    private void drainOrphans() {
+        for (String node : likeJournal.nodes()) {
+            if (node.equals(nodeId)) {
+                continue;
+            }
+            String token = likeJournal.tryLease(node);
+            if (token == null) {
+                continue;
+            }
+            try {
+                replayJournal(node);
+                likeJournal.unregister(node);
+            } finally {
+                likeJournal.releaseLease(node, token);
+            }
+        }
+    }
+
+    /**
+     * 上一次崩溃留下的租约会在 LEASE_TTL 内过期，这段时间内重试；配置的节点ID仍被占用时拒绝启动
+     */
+    private void acquireLease() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + LikeJournal.LEASE_TTL.toMillis() + LEASE_RETRY_MS;
+        while (true) {
+            try {
+                leaseToken = likeJournal.tryLease(nodeId);
+            } catch (Exception e) {
+                // Redis 不可用时日志本身也写不进去，不阻止启动
+                log.warn("acquire like journal lease failed: {}", e.getMessage());
+                return;
+            }
+            if (leaseToken != null) {
+                return;
+            }
+            if (!configuredNodeId || System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("node id " + nodeId + " is already used by another running instance");
+            }
+            Thread.sleep(LEASE_RETRY_MS);
+        }
+    }
+
+    /**
+     * 在一个事务中写入 flush id 和所有计数，flush id 已经存在时说明这批已经落库，什么都不做
+     */
+    private void apply(Map<String, Long> deltas, String id) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Map<String, Long> posts = new HashMap<>();
+        Map<String, Long> shardedPosts = new HashMap<>();
+        Map<String, Long> comments = new HashMap<>();
+        Map<String, Long> replies = new HashMap<>();
+        deltas.forEach((key, delta) -> {
+            int index = key.indexOf(SEPARATOR);
+            int targetType = Integer.parseInt(key.substring(0, index));
+            String targetId = key.substring(index + 1);
+            if (targetType == TargetTypeConstant.POST) {
+                // 热门帖子写入分片计数，不更新 post 表的行
+                (postCounterShards.isSharded(targetId) ? shardedPosts : posts).put(targetId, delta);
+            } else if (targetType == TargetTypeConstant.COMMENT) {
+                comments.put(targetId, delta);
+            } else if (targetType == TargetTypeConstant.REPLY) {
+                replies.put(targetId, delta);
+            }
+        });
+
+        // 帖子作者的获赞数，一次查出所有帖子的作者后按作者合并
+        Map<String, Long> authors = new HashMap<>();
+        Map<String, Long> allPosts = new HashMap<>(posts);
+        allPosts.putAll(shardedPosts);
+        if (!allPosts.isEmpty()) {
+            for (Post post : postMapper.selectUserIdsByIds(allPosts.keySet())) {
+                authors.merge(post.getUserId(), allPosts.get(post.getId()), Long::sum);
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (likeFlushLogMapper.insert(id) == 0) {
+                return;
+            }
+            inBatches(posts, postMapper::batchUpdateLikeCount);
+            inBatches(shardedPosts, postCounterShards::addLikeCounts);
+            inBatches(comments, commentMapper::batchUpdateLikeCount);
+            inBatches(replies, replyMapper::batchUpdateLikeCount);
+            inBatches(authors, userMapper::batchUpdateLikeCount);
+        });
+    }
+
+    /**
+     * 评论、回复分页以所属帖子、评论为单位失效
+     */
+    private void evictCaches(Map<String, Long> deltas) {
+        Set<String> postIds = new HashSet<>();
+        Set<String> commentIds = new HashSet<>();
+        Set<String> replyIds = new HashSet<>();
+        deltas.keySet().forEach(key -> {
+            int index = key.indexOf(SEPARATOR);
+            int targetType = Integer.parseInt(key.substring(0, index));
+            String targetId = key.substring(index + 1);
+            if (targetType == TargetTypeConstant.POST) {
+                postIds.add(targetId);
+            } else if (targetType == TargetTypeConstant.COMMENT) {
+                commentIds.add(targetId);
+            } else if (targetType == TargetTypeConstant.REPLY) {
+                replyIds.add(targetId);
+            }
+        });
+        try {
+            postSummaryCache.evictAll(postIds);
+            postIds.forEach(postDetailCache::evict);
+
+            Set<String> commentOwners = new HashSet<>();
+            if (!commentIds.isEmpty()) {
+                for (Comment comment : commentMapper.selectPostIdsByIds(commentIds)) {
+                    commentOwners.add(comment.getPostId());
+                }
+            }
+            commentOwners.forEach(commentPageCache::evict);
+
+            Set<String> replyOwners = new HashSet<>();
+            if (!replyIds.isEmpty()) {
+                for (Reply reply : replyMapper.selectCommentIdsByIds(replyIds)) {
+                    replyOwners.add(reply.getCommentId());
+                }
+            }
+            replyOwners.forEach(replyPageCache::evict);
+        } catch (Exception e) {
+            log.warn("evict like count caches failed: {}", e.getMessage());
+        }
+    }
+
+    private void inBatches(Map<String, Long> deltas, Consumer<Map<String, Long>> update) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(deltas.entrySet());
+        for (int i = 0; i < entries.size(); i += BATCH_SIZE) {
+            Map<String, Long> batch = new HashMap<>();
+            for (Map.Entry<String, Long> entry : entries.subList(i, Math.min(i + BATCH_SIZE, entries.size()))) {
+                batch.put(entry.getKey(), entry.getValue());
+            }
+            update.accept(batch);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.bettercallxiaojin.home.counter;
+
+import com.bettercallxiaojin.home.common.util.RedisLockUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 点赞增量的 Redis 日志，每个节点两个 hash：
+ * pending 记录尚未开始落库的增量；flush 时整体转成 flushing，并带上本批次的 flush id（字段 #id）
+ * 落库时 flush id 和计数在同一个事务中写入 like_flush_log，同一批次重放时不会重复累加
+ * 有日志的节点ID登记在 like:nodes 中，节点租约过期后由其它节点回放它留下的日志
+ */
+@Component
+@RequiredArgsConstructor
+public class LikeJournal {
+
+    public static final Duration LEASE_TTL = Duration.ofSeconds(60);
+
+    private static final String PENDING_PREFIX = "like:pending:";
+    private static final String FLUSHING_PREFIX = "like:flushing:";
+    private static final String LEASE_PREFIX = "like:node:";
+    private static final String NODES_KEY = "like:nodes";
+    private static final String ID_FIELD = "#id";
+
+    // 调用方保证 flushing 已经落库；丢弃它，把 pending 整体转成新的 flushing 并写入 flush id
+    private static final RedisScript<Long> ROTATE = new DefaultRedisScript<>(
+            "redis.call('DEL', KEYS[2]) " +
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end " +
+            "redis.call('RENAME', KEYS[1], KEYS[2]) " +
+            "redis.call('HSET', KEYS[2], '" + ID_FIELD + "', ARGV[1]) " +
+            "return 1",
+            Long.class);
+    // 只删除指定批次的 flushing
+    private static final RedisScript<Long> CLEAR = new DefaultRedisScript<>(
+            "if redis.call('HGET', KEYS[1], '" + ID_FIELD + "') == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * 正在落库的一批增量，id 为 null 表示没有
+     */
+    public record Batch(String id, Map<String, Long> deltas) {
+    }
+
+    public void append(String nodeId, String key, long delta) {
+        redisTemplate.opsForHash().increment(PENDING_PREFIX + nodeId, key, delta);
+    }
+
+    /**
+     * @return pending 为空、没有生成新批次时返回 false
+     */
+    public boolean rotate(String nodeId, String flushId) {
+        Long rotated = redisTemplate.execute(ROTATE, List.of(PENDING_PREFIX + nodeId, FLUSHING_PREFIX + nodeId), flushId);
+        return rotated != null && rotated == 1;
+    }
+
+    public Batch readFlushing(String nodeId) {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(FLUSHING_PREFIX + nodeId);
+        String id = null;
+        Map<String, Long> deltas = new HashMap<>();
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            if (ID_FIELD.equals(entry.getKey())) {
+                id = entry.getValue().toString();
+            } else {
+                deltas.put(entry.getKey().toString(), Long.parseLong(entry.getValue().toString()));
+            }
+        }
+        return new Batch(id, deltas);
+    }
+
+    public void clearFlushing(String nodeId, String flushId) {
+        redisTemplate.execute(CLEAR, List.of(FLUSHING_PREFIX + nodeId), flushId);
+    }
+
+    public void register(String nodeId) {
+        redisTemplate.opsForSet().add(NODES_KEY, nodeId);
+    }
+
+    public void unregister(String nodeId) {
+        redisTemplate.opsForSet().remove(NODES_KEY, nodeId);
+    }
+
+    public Set<String> nodes() {
+        Set<String> nodes = redisTemplate.opsForSet().members(NODES_KEY);
+        return nodes == null ? Set.of() : nodes;
+    }
+
+    /**
+     * @return 租约令牌，节点租约被占用时返回 null
+     */
+    public String tryLease(String nodeId) {
+        return RedisLockUtil.tryLock(redisTemplate, LEASE_PREFIX + nodeId, LEASE_TTL);
+    }
+
+    public boolean renewLease(String nodeId, String token) {
+        return RedisLockUtil.renew(redisTemplate, LEASE_PREFIX + nodeId, token, LEASE_TTL);
+    }
+
+    public void releaseLease(String nodeId, String token) {
+        RedisLockUtil.unlock(redisTemplate, LEASE_PREFIX + nodeId, token);
+    }
+}
@@ -0,0 +1,462 @@
+package com.bettercallxiaojin.home.counter;
+
+import com.bettercallxiaojin.home.cache.UnreadCounterCache;
+import com.bettercallxiaojin.home.common.Constant.NotificationConstant;
+import com.bettercallxiaojin.home.common.Constant.TargetTypeConstant;
+import com.bettercallxiaojin.home.mapper.CommentMapper;
+import com.bettercallxiaojin.home.mapper.NotificationMapper;
+import com.bettercallxiaojin.home.mapper.PostMapper;
+import com.bettercallxiaojin.home.mapper.ReplyMapper;
+import com.bettercallxiaojin.home.pojo.entity.Comment;
+import com.bettercallxiaojin.home.pojo.entity.Notification;
+import com.bettercallxiaojin.home.pojo.entity.Post;
+import com.bettercallxiaojin.home.pojo.entity.Reply;
+import com.bettercallxiaojin.home.push.NotificationPushHub;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 通知异步批量写入：请求线程只把事件放入有界队列，后台线程批量取出，
+ * 一次查出所有涉及的帖子、评论、回复，再用一条多行 INSERT 写入
+ * 删除事件走同一个队列，保证“点赞后马上取消”这类先后顺序不会颠倒
+ * 队列满时调用线程阻塞等待（背压），只有后台线程写入，保证先后顺序；关闭时先写完队列中剩余的事件
+ * 单条语句失败时重试一次
+ * 点赞和关注按 接收者 + 目标 + 时间窗口 聚合为一行，批内先合并，再 upsert 到已有的聚合行
+ * 聚合行的触发用户记录在 notification_actor 中，人数按其中新增的用户累加，取消时删除对应的用户
+ */
+@Component
+@Slf4j
+public class NotificationWriter {
+
+    private static final int BATCH_SIZE = 500;
+    private static final long POLL_TIMEOUT_MS = 1000;
+    private static final long OFFER_TIMEOUT_MS = 100;
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+    // 聚合行只保留最近的几个触发用户用于展示
+    private static final int MAX_ACTOR_IDS = 5;
+    private static final String SEPARATOR = "|";
+
+    private final PostMapper postMapper;
+    private final CommentMapper commentMapper;
+    private final ReplyMapper replyMapper;
+    private final NotificationMapper notificationMapper;
+    private final UnreadCounterCache unreadCounterCache;
+    private final NotificationPushHub notificationPushHub;
+    private final TransactionTemplate transactionTemplate;
+
+    private final long aggregateWindowSeconds;
+    private final BlockingQueue<Event> queue;
+    private final Counter writtenCounter;
+    private final Counter blockedCounter;
+    private final Counter failedCounter;
+    private final Timer batchTimer;
+    // 停止后由调用线程写入，和后台线程的最后一批互斥
+    private final Object writeLock = new Object();
+
+    private volatile boolean running = true;
+    private Thread worker;
+
+    public NotificationWriter(PostMapper postMapper,
+                              CommentMapper commentMapper,
+                              ReplyMapper replyMapper,
+                              NotificationMapper notificationMapper,
+                              UnreadCounterCache unreadCounterCache,
+                              NotificationPushHub notificationPushHub,
+                              TransactionTemplate transactionTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${bettercallxiaojin.notification.queue-capacity:10000}") int capacity,
+                              @Value("${bettercallxiaojin.notification.aggregate-window-minutes:1440}") long aggregateWindowMinutes) {
+        this.postMapper = postMapper;
+        this.commentMapper = commentMapper;
+        this.replyMapper = replyMapper;
+        this.notificationMapper = notificationMapper;
+        this.unreadCounterCache = unreadCounterCache;
+        this.notificationPushHub = notificationPushHub;
+        this.transactionTemplate = transactionTemplate;
+        this.aggregateWindowSeconds = Duration.ofMinutes(aggregateWindowMinutes).toSeconds();
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        Gauge.builder("notification.queue.size", queue, BlockingQueue::size)
+                .description("Notification events waiting to be written")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("notification.written")
+                .description("Notifications inserted")
+                .register(meterRegistry);
+        this.blockedCounter = Counter.builder("notification.queue.blocked")
+                .description("Events whose producer had to wait because the queue was full")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("notification.failed")
+                .description("Notification events dropped after a write error")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("notification.batch.write")
+                .description("Time to resolve and write one batch of notification events")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 通知事件，actorId 为触发通知的用户
+     */
+    public record Event(Kind kind, String actorId, String targetId, Integer targetType, String content, LocalDateTime createdAt) {
+    }
+
+    public enum Kind {
+        LIKE, COMMENT, REPLY, FOLLOW, DELETE_LIKE, DELETE_FOLLOW
+    }
+
+    public void submit(Kind kind, String actorId, String targetId, Integer targetType, String content) {
+        Event event = new Event(kind, actorId, targetId, targetType, content, LocalDateTime.now());
+        if (running) {
+            try {
+                if (!queue.offer(event, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    // 队列已满，等待后台线程腾出空间
+                    blockedCounter.increment();
+                    queue.put(event);
+                }
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 正在关闭，由调用线程直接写入
+        process(List.of(event));
+    }
+
+    @PostConstruct
+    public void start() {
+        worker = new Thread(this::drainLoop, "notification-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.join(SHUTDOWN_TIMEOUT_MS);
+        if (worker.isAlive()) {
+            log.warn("notification writer stopped with {} events left", queue.size());
+            return;
+        }
+        // 后台线程退出前后放入的事件
+        List<Event> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            process(rest);
+        }
+    }
+
+    private void drainLoop() {
+        List<Event> batch = new ArrayList<>(BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                Event first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("notification writer error: {}", e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 按顺序处理，遇到删除事件时先写入它之前的通知
+     */
+    private void process(List<Event> events) {
+        synchronized (writeLock) {
+            batchTimer.record(() -> {
+                List<Event> inserts = new ArrayList<>();
+                for (Event event : events) {
+                    if (event.kind() == Kind.DELETE_LIKE || event.kind() == Kind.DELETE_FOLLOW) {
+                        writeInserts(inserts);
+                        inserts.clear();
+                        writeDelete(event);
+                    } else {
+                        inserts.add(event);
+                    }
+                }
+                writeInserts(inserts);
+            });
+        }
+    }
+
+    /**
+     * 每条语句单独执行，失败后重试一次；多行 INSERT 和 upsert 都是单条语句，重试不会重复写入
+     */
+    private <T> T retryOnce(Supplier<T> write) {
+        try {
+            return write.get();
+        } catch (Exception e) {
+            log.warn("notification write failed, retrying: {}", e.getMessage());
+            return write.get();
+        }
+    }
+
+    private void writeDelete(Event event) {
+        try {
+            List<Notification> deleted;
+            if (event.kind() == Kind.DELETE_LIKE) {
+                deleted = retryOnce(() -> notificationMapper.deleteLike(event.actorId(), event.targetId(), event.targetType(), NotificationConstant.LIKE));
+            } else {
+                deleted = retryOnce(() -> notificationMapper.deleteFollow(event.actorId(), event.targetId(), NotificationConstant.FOLLOW));
+            }
+            countUnread(deleted, -1);
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.warn("delete notification failed, kind: {}, target: {}, error: {}", event.kind(), event.targetId(), e.getMessage());
+        }
+    }
+
+    private void writeInserts(List<Event> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        try {
+            List<Notification> singles = new ArrayList<>();
+            List<Notification> aggregated = new ArrayList<>();
+            for (Notification notification : retryOnce(() -> resolve(events))) {
+                (notification.getAggKey() == null ? singles : aggregated).add(notification);
+            }
+            if (!singles.isEmpty()) {
+                retryOnce(() -> notificationMapper.insertBatch(singles));
+                writtenCounter.increment(singles.size());
+                countUnread(singles, 1);
+            }
+            if (!aggregated.isEmpty()) {
+                writeAggregated(aggregated);
+            }
+        } catch (Exception e) {
+            failedCounter.increment(events.size());
+            log.warn("write {} notifications failed: {}", events.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 批内同一聚合行先合并，在一个事务中先插入不存在的聚合行，再写入触发用户并累加人数
+     * 新插入的行按新通知计数；更新的行不知道原来是否已读，直接删除该用户的未读计数让它重建
+     * 触发用户都已经在 notification_actor 中的行不会被更新
+     */
+    private void writeAggregated(List<Notification> notifications) {
+        Map<String, Notification> merged = new LinkedHashMap<>();
+        Set<String> actorKeys = new HashSet<>();
+        List<Notification> actors = new ArrayList<>();
+        for (Notification notification : notifications) {
+            String key = notification.getUserId() + SEPARATOR + notification.getAggKey();
+            if (!actorKeys.add(key + SEPARATOR + notification.getTargetUserId())) {
+                continue;
+            }
+            actors.add(notification);
+
+            Notification existing = merged.get(key);
+            if (existing == null) {
+                merged.put(key, notification);
+                continue;
+            }
+            List<String> actorIds = new ArrayList<>(List.of(existing.getActorIds().split(",")));
+            actorIds.add(0, notification.getTargetUserId());
+            existing.setActorIds(String.join(",", actorIds.subList(0, Math.min(actorIds.size(), MAX_ACTOR_IDS))));
+            existing.setTargetUserId(notification.getTargetUserId());
+            existing.setTargetContent(notification.getTargetContent());
+            existing.setCreatedAt(notification.getCreatedAt());
+        }
+
+        List<Notification> rows = new ArrayList<>(merged.values());
+        Set<String> insertedKeys = new HashSet<>();
+        List<Notification> written = retryOnce(() -> transactionTemplate.execute(status -> {
+            insertedKeys.clear();
+            for (Notification notification : notificationMapper.insertAggregated(rows)) {
+                insertedKeys.add(notification.getUserId() + SEPARATOR + notification.getAggKey());
+            }
+            return notificationMapper.addActors(rows, actors, MAX_ACTOR_IDS);
+        }));
+        writtenCounter.increment(written.size());
+
+        List<Notification> inserted = new ArrayList<>();
+        for (Notification notification : written) {
+            if (insertedKeys.contains(notification.getUserId() + SEPARATOR + notification.getAggKey())) {
+                inserted.add(notification);
+            } else {
+                unreadCounterCache.evict(notification.getUserId());
+                notificationPushHub.notifyNew(notification.getUserId(), notification.getType());
+            }
+        }
+        countUnread(inserted, 1);
+    }
+
+    /**
+     * 按用户、类型汇总未读通知的变化，每个用户更新一次计数
+     */
+    private void countUnread(List<Notification> notifications, int sign) {
+        Map<String, Map<Integer, Integer>> deltas = new HashMap<>();
+        for (Notification notification : notifications) {
+            if (Boolean.TRUE.equals(notification.getRead())) {
+                continue;
+            }
+            deltas.computeIfAbsent(notification.getUserId(), k -> new HashMap<>())
+                    .merge(notification.getType(), sign, Integer::sum);
+        }
+        deltas.forEach(unreadCounterCache::increment);
+
+        // 新通知每个用户每种类型推送一次，删除只需要刷新角标
+        deltas.forEach((userId, types) -> {
+            if (sign > 0) {
+                types.keySet().forEach(type -> notificationPushHub.notifyNew(userId, type));
+            } else {
+                notificationPushHub.notifyBadge(userId);
+            }
+        });
+    }
+
+    /**
+     * 批量查出所有涉及的目标，再逐个生成通知；目标已经不存在的事件直接跳过
+     */
+    private List<Notification> resolve(List<Event> events) {
+        Set<String> postIds = new HashSet<>();
+        Set<String> commentIds = new HashSet<>();
+        Set<String> replyIds = new HashSet<>();
+        for (Event event : events) {
+            if (event.kind() == Kind.COMMENT) {
+                postIds.add(event.targetId());
+            } else if (event.kind() == Kind.LIKE || event.kind() == Kind.REPLY) {
+                if (TargetTypeConstant.POST == event.targetType()) {
+                    postIds.add(event.targetId());
+                } else if (TargetTypeConstant.COMMENT == event.targetType()) {
+                    commentIds.add(event.targetId());
+                } else if (TargetTypeConstant.REPLY == event.targetType()) {
+                    replyIds.add(event.targetId());
+                }
+            }
+        }
+
+        // 回复的帖子ID要通过所属评论查到，先查回复
+        Map<String, Reply> replies = new HashMap<>();
+        if (!replyIds.isEmpty()) {
+            for (Reply reply : replyMapper.selectByIds(replyIds)) {
+                replies.put(reply.getId(), reply);
+                commentIds.add(reply.getCommentId());
+            }
+        }
+        Map<String, Comment> comments = new HashMap<>();
+        if (!commentIds.isEmpty()) {
+            for (Comment comment : commentMapper.selectByIds(commentIds)) {
+                comments.put(comment.getId(), comment);
+            }
+        }
+        Map<String, Post> posts = new HashMap<>();
+        if (!postIds.isEmpty()) {
+            for (Post post : postMapper.selectPostsByIds(new ArrayList<>(postIds))) {
+                posts.put(post.getId(), post);
+            }
+        }
+
+        List<Notification> notifications = new ArrayList<>();
+        for (Event event : events) {
+            Notification notification = new Notification();
+            notification.setId(UUID.randomUUID().toString());
+            notification.setRead(false);
+            notification.setCreatedAt(event.createdAt());
+            notification.setTargetUserId(event.actorId());
+
+            if (event.kind() == Kind.FOLLOW) {
+                notification.setType(NotificationConstant.FOLLOW);
+                notification.setUserId(event.targetId());
+                aggregate(notification, NotificationConstant.FOLLOW + ":" + bucket(event.createdAt()));
+                notifications.add(notification);
+                continue;
+            }
+
+            notification.setTargetId(event.targetId());
+            notification.setTargetType(event.targetType());
+            notification.setContent(event.content());
+
+            if (TargetTypeConstant.POST == event.targetType()) {
+                Post post = posts.get(event.targetId());
+                if (post == null) {
+                    continue;
+                }
+                notification.setUserId(post.getUserId());
+                notification.setTargetContent(post.getTitle());
+                notification.setPostId(post.getId());
+            } else if (TargetTypeConstant.COMMENT == event.targetType()) {
+                Comment comment = comments.get(event.targetId());
+                if (comment == null) {
+                    continue;
+                }
+                notification.setUserId(comment.getUserId());
+                notification.setTargetContent(comment.getContent());
+                notification.setPostId(comment.getPostId());
+            } else if (TargetTypeConstant.REPLY == event.targetType()) {
+                Reply reply = replies.get(event.targetId());
+                Comment comment = reply == null ? null : comments.get(reply.getCommentId());
+                if (comment == null) {
+                    continue;
+                }
+                notification.setUserId(reply.getUserId());
+                notification.setTargetContent(reply.getContent());
+                notification.setPostId(comment.getPostId());
+            } else {
+                continue;
+            }
+
+            if (event.kind() == Kind.LIKE) {
+                // 自己给自己点赞，不通知
+                if (notification.getUserId().equals(event.actorId())) {
+                    continue;
+                }
+                notification.setType(NotificationConstant.LIKE);
+                aggregate(notification, NotificationConstant.LIKE + ":" + event.targetType() + ":" + event.targetId() + ":" + bucket(event.createdAt()));
+            } else if (event.kind() == Kind.COMMENT) {
+                // 自己评论自己的帖子，不通知
+                if (notification.getUserId().equals(event.actorId())) {
+                    continue;
+                }
+                notification.setType(NotificationConstant.COMMENT);
+            } else {
+                notification.setType(NotificationConstant.REPLY);
+            }
+            notifications.add(notification);
+        }
+        return notifications;
+    }
+
+    private void aggregate(Notification notification, String aggKey) {
+        notification.setAggKey(aggKey);
+        notification.setActorCount(1);
+        notification.setActorIds(notification.getTargetUserId());
+    }
+
+    private long bucket(LocalDateTime createdAt) {
+        return createdAt.toEpochSecond(ZoneOffset.UTC) / aggregateWindowSeconds;
+    }
+}
@@ -0,0 +1,236 @@
+package com.bettercallxiaojin.home.counter;
+
+import com.bettercallxiaojin.home.cache.CacheInvalidationBus;
+import com.bettercallxiaojin.home.cache.PostDetailCache;
+import com.bettercallxiaojin.home.cache.PostSummaryCache;
+import com.bettercallxiaojin.home.common.Constant.CacheTypeConstant;
+import com.bettercallxiaojin.home.mapper.PostCounterShardMapper;
+import com.bettercallxiaojin.home.mapper.PostMapper;
+import com.bettercallxiaojin.home.pojo.entity.Post;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 热门帖子的分片计数：写入频率超过阈值的帖子，点赞数、评论数的增量随机写入 post_counter_shard 的 N 个槽之一，
+ * 不再集中更新 post 表的同一行；读取时加上各槽之和，后台任务定期把槽合并回 post 表
+ * 已分片的帖子记录在 Redis ZSET 中（score 为最近一次判定为热门的时间），各节点定期同步到本地，新切换的帖子同时广播
+ * 冷却后只停止写入槽，读取仍然加上槽之和；等合并任务把残留的槽合并完，才从 ZSET 中移除
+ */
+@Component
+@Slf4j
+public class PostCounterShards {
+
+    private static final String SHARDED_KEY = "post:counter:sharded";
+    // 统计写入频率的固定窗口
+    private static final Duration RATE_WINDOW = Duration.ofSeconds(10);
+    // 超过这段时间没有再判定为热门的帖子，恢复直接写 post 表
+    private static final Duration COOL_DOWN = Duration.ofMinutes(10);
+    // 冷却后各节点最迟在同步间隔加上一次 flush 之后停止写入槽，留足余量后再移除
+    private static final Duration DRAIN_GRACE = Duration.ofMinutes(1);
+
+    // ARGV[1] 为时间上限，之后为帖子ID；期间重新判定为热门（score 更新）的帖子不移除
+    private static final RedisScript<Long> REMOVE_IF_COOLED = new DefaultRedisScript<>(
+            "local removed = 0 " +
+            "for i = 2, #ARGV do " +
+            "  local score = redis.call('ZSCORE', KEYS[1], ARGV[i]) " +
+            "  if score and tonumber(score) <= tonumber(ARGV[1]) then removed = removed + redis.call('ZREM', KEYS[1], ARGV[i]) end " +
+            "end " +
+            "return removed",
+            Long.class);
+
+    private final PostCounterShardMapper postCounterShardMapper;
+    private final PostMapper postMapper;
+    private final StringRedisTemplate redisTemplate;
+    private final PostSummaryCache postSummaryCache;
+    private final PostDetailCache postDetailCache;
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    private final int slots;
+    private final int threshold;
+
+    private final Cache<String, AtomicInteger> writeRates = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(RATE_WINDOW)
+            .build();
+    // 写入走分片的帖子（未冷却）
+    private volatile Set<String> shardedPosts = Set.of();
+    // 读取需要加上槽之和的帖子（ZSET 中的全部帖子，包括已冷却、等待合并的）
+    private volatile Set<String> summedPosts = Set.of();
+
+    public PostCounterShards(PostCounterShardMapper postCounterShardMapper,
+                             PostMapper postMapper,
+                             StringRedisTemplate redisTemplate,
+                             PostSummaryCache postSummaryCache,
+                             PostDetailCache postDetailCache,
+                             CacheInvalidationBus cacheInvalidationBus,
+                             @Value("${bettercallxiaojin.counter.shard-slots:16}") int slots,
+                             @Value("${bettercallxiaojin.counter.shard-threshold:50}") int threshold) {
+        this.postCounterShardMapper = postCounterShardMapper;
+        this.postMapper = postMapper;
+        this.redisTemplate = redisTemplate;
+        this.postSummaryCache = postSummaryCache;
+        this.postDetailCache = postDetailCache;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.slots = slots;
+        this.threshold = threshold;
+        cacheInvalidationBus.subscribe(CacheTypeConstant.COUNTER_SHARD, this::markLocal);
+    }
+
+    public boolean isSharded(String postId) {
+        return shardedPosts.contains(postId);
+    }
+
+    /**
+     * 记录一次写入，窗口内写入次数达到阈值时把帖子切换为分片计数
+     * 已分片的帖子每个窗口在达到阈值时刷新一次热门时间，持续热门就不会冷却
+     */
+    public void recordWrite(String postId) {
+        int count = writeRates.get(postId, k -> new AtomicInteger()).incrementAndGet();
+        if (count < threshold) {
+            return;
+        }
+        boolean sharded = shardedPosts.contains(postId);
+        if (sharded && count != threshold) {
+            return;
+        }
+        try {
+            redisTemplate.opsForZSet().add(SHARDED_KEY, postId, System.currentTimeMillis());
+        } catch (Exception e) {
+            log.warn("mark post sharded failed, id: {}, error: {}", postId, e.getMessage());
+        }
+        if (!sharded) {
+            // 先写 Redis 再改本地，避免同时进行的同步用旧的成员覆盖掉
+            markLocal(postId);
+            // 其它节点不用等下一次同步就开始加上槽之和
+            cacheInvalidationBus.publish(CacheTypeConstant.COUNTER_SHARD, postId);
+        }
+    }
+
+    private synchronized void markLocal(String postId) {
+        if (!shardedPosts.contains(postId)) {
+            Set<String> updated = new HashSet<>(shardedPosts);
+            updated.add(postId);
+            shardedPosts = updated;
+        }
+        if (!summedPosts.contains(postId)) {
+            Set<String> updated = new HashSet<>(summedPosts);
+            updated.add(postId);
+            summedPosts = updated;
+        }
+    }
+
+    public void addCommentCount(String postId, int delta) {
+        recordWrite(postId);
+        if (isSharded(postId)) {
+            postCounterShardMapper.upsert(postId, ThreadLocalRandom.current().nextInt(slots), 0, delta);
+        } else {
+            postMapper.updateCommentCount(postId, delta);
+        }
+    }
+
+    /**
+     * 批量写入点赞增量，需要在调用方的事务中执行
+     */
+    public void addLikeCounts(Map<String, Long> deltas) {
+        postCounterShardMapper.batchAddLikeDelta(deltas, slots);
+    }
+
+    /**
+     * 可能有槽的帖子的槽之和，一次 GROUP BY 查出；其它帖子不查库
+     */
+    public Map<String, Post> sums(Collection<String> postIds) {
+        List<String> sharded = new ArrayList<>();
+        for (String postId : postIds) {
+            if (summedPosts.contains(postId)) {
+                sharded.add(postId);
+            }
+        }
+
+        Map<String, Post> result = new HashMap<>();
+        if (sharded.isEmpty()) {
+            return result;
+        }
+        try {
+            for (Post sum : postCounterShardMapper.sumByPostIds(sharded)) {
+                result.put(sum.getId(), sum);
+            }
+        } catch (Exception e) {
+            log.warn("sum counter shards failed: {}", e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 同步其它节点切换的帖子；已冷却的帖子停止写入槽，但读取仍然加上槽之和
+     */
+    public synchronized void refreshShardedPosts() {
+        long coolDownBefore = System.currentTimeMillis() - COOL_DOWN.toMillis();
+        Set<ZSetOperations.TypedTuple<String>> members = redisTemplate.opsForZSet().rangeWithScores(SHARDED_KEY, 0, -1);
+
+        Set<String> writing = new HashSet<>();
+        Set<String> summed = new HashSet<>();
+        if (members != null) {
+            for (ZSetOperations.TypedTuple<String> member : members) {
+                summed.add(member.getValue());
+                if (member.getScore() != null && member.getScore() >= coolDownBefore) {
+                    writing.add(member.getValue());
+                }
+            }
+        }
+        shardedPosts = writing;
+        summedPosts = summed;
+    }
+
+    /**
+     * 合并最多 limit 个槽回 post 表
+     * @return 合并过的帖子数，为 0 表示已经没有槽
+     */
+    public int foldBack(int limit) {
+        List<String> folded = postCounterShardMapper.foldBack(limit);
+        postSummaryCache.evictAll(folded);
+        // 槽之和已经并入 post 表，缓存中的旧计数加上归零的槽之和会回退
+        folded.forEach(postDetailCache::evict);
+        return folded.size();
+    }
+
+    /**
+     * 移除冷却已久、确定不会再有节点写入槽的帖子；还有槽没合并的帖子留到下次，否则读取会漏掉这部分增量
+     * @param foldStartedAt 本轮合并开始的时间
+     */
+    public void removeCooledDown(long foldStartedAt) {
+        long removeBefore = foldStartedAt - COOL_DOWN.toMillis() - DRAIN_GRACE.toMillis();
+        Set<String> candidates = redisTemplate.opsForZSet().rangeByScore(SHARDED_KEY, 0, removeBefore);
+        if (candidates == null || candidates.isEmpty()) {
+            return;
+        }
+        Set<String> removable = new HashSet<>(candidates);
+        for (Post post : postCounterShardMapper.sumByPostIds(candidates)) {
+            removable.remove(post.getId());
+        }
+        if (removable.isEmpty()) {
+            return;
+        }
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(removeBefore));
+        args.addAll(removable);
+        redisTemplate.execute(REMOVE_IF_COOLED, List.of(SHARDED_KEY), args.toArray());
+    }
+}
@@ -0,0 +1,50 @@
+package com.bettercallxiaojin.home.job;
+
+import com.bettercallxiaojin.home.cache.HotPostRanking;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class HotPostRankingJob {
+
+    private static final String LOCK_KEY = "post:hot:lock";
+    private static final int DIRTY_BATCH_SIZE = 500;
+
+    private final HotPostRanking hotPostRanking;
+    private final StringRedisTemplate redisTemplate;
+
+    @Scheduled(fixedDelay = 30_000, initialDelay = 30_000)
+    public void refreshDirty() {
+        try {
+            int refreshed;
+            do {
+                refreshed = hotPostRanking.refreshDirty(DIRTY_BATCH_SIZE);
+            } while (refreshed == DIRTY_BATCH_SIZE);
+        } catch (Exception e) {
+            log.warn("refresh dirty hot posts failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 热度随时间衰减，需要定期全量重算；多实例部署时只有拿到锁的实例执行
+     */
+    @Scheduled(fixedDelay = 600_000, initialDelay = 60_000)
+    public void rebuild() {
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, "1", Duration.ofMinutes(5));
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        try {
+            hotPostRanking.rebuild();
+        } catch (Exception e) {
+            log.warn("rebuild hot post ranking failed: {}", e.getMessage());
+        }
+    }
+}
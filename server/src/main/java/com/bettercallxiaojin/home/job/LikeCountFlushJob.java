@@ -0,0 +1,31 @@
+package com.bettercallxiaojin.home.job;
+
+import com.bettercallxiaojin.home.counter.LikeCountAggregator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class LikeCountFlushJob {
+
+    private final LikeCountAggregator likeCountAggregator;
+
+    @Scheduled(fixedDelayString = "${bettercallxiaojin.like.flush-interval-ms:1000}")
+    public void flush() {
+        likeCountAggregator.flush();
+    }
+
+    /**
+     * 租约续期和 flush 分开调度，落库变慢时不会让租约过期
+     */
+    @Scheduled(fixedDelay = 10_000)
+    public void renewLease() {
+        likeCountAggregator.renewLease();
+    }
+
+    @Scheduled(fixedDelay = 3_600_000, initialDelay = 600_000)
+    public void purgeFlushLog() {
+        likeCountAggregator.purgeFlushLog();
+    }
+}
@@ -0,0 +1,108 @@
+package com.bettercallxiaojin.home.job;
+
+import com.bettercallxiaojin.home.common.Constant.NotificationConstant;
+import com.bettercallxiaojin.home.common.util.RedisLockUtil;
+import com.bettercallxiaojin.home.mapper.NotificationMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * 已读且超过保留天数的通知移到 notification_archive，热表只保留未读和近期的通知
+ * 每次运行分批移动，批数有上限，积压的部分留给下一次运行；同时清理过期的删除记录
+ * 归档的通知仍然可以通过游标分页读到，见 archivedBefore
+ */
+@Component
+@Slf4j
+public class NotificationArchiveJob {
+
+    private static final String LOCK_KEY = "notification:archive:lock";
+    private static final Duration LOCK_TTL = Duration.ofMinutes(30);
+
+    private final NotificationMapper notificationMapper;
+    private final StringRedisTemplate redisTemplate;
+    private final Duration retention;
+    private final int batchSize;
+    private final int maxBatches;
+
+    private final Counter movedCounter;
+    private final Timer runTimer;
+
+    public NotificationArchiveJob(NotificationMapper notificationMapper,
+                                  StringRedisTemplate redisTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${bettercallxiaojin.notification.archive.retention-days:90}") long retentionDays,
+                                  @Value("${bettercallxiaojin.notification.archive.batch-size:1000}") int batchSize,
+                                  @Value("${bettercallxiaojin.notification.archive.max-batches:50}") int maxBatches) {
+        this.notificationMapper = notificationMapper;
+        this.redisTemplate = redisTemplate;
+        this.retention = Duration.ofDays(retentionDays);
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+
+        this.movedCounter = Counter.builder("notification.archive.moved")
+                .description("Read notifications moved to the archive table")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("notification.archive.run")
+                .description("Time spent moving notifications to the archive table in one run")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return 归档表中的通知都早于这个时间，游标分页翻到这之前才需要读取归档表
+     */
+    public LocalDateTime archivedBefore() {
+        return LocalDateTime.now().minus(retention);
+    }
+
+    /**
+     * 多实例部署时只有拿到锁的实例执行
+     */
+    @Scheduled(fixedDelayString = "${bettercallxiaojin.notification.archive.interval-ms:3600000}", initialDelay = 120_000)
+    public void archive() {
+        String token = RedisLockUtil.tryLock(redisTemplate, LOCK_KEY, LOCK_TTL);
+        if (token == null) {
+            return;
+        }
+        try {
+            int total = runTimer.record(() -> moveBatches(token));
+            if (total > 0) {
+                log.info("archived {} read notifications", total);
+            }
+            // 过了保留期的删除记录不再有用，客户端的水位更早时会被要求全量拉取
+            notificationMapper.deleteTombstonesBefore(LocalDateTime.now().minusDays(NotificationConstant.TOMBSTONE_RETENTION_DAYS));
+        } catch (Exception e) {
+            log.warn("archive notifications failed: {}", e.getMessage());
+        } finally {
+            RedisLockUtil.unlock(redisTemplate, LOCK_KEY, token);
+        }
+    }
+
+    private int moveBatches(String token) {
+        LocalDateTime before = archivedBefore();
+        int total = 0;
+        for (int i = 0; i < maxBatches; i++) {
+            // 每批之前续期，锁已经被其它实例拿走时停止
+            if (!RedisLockUtil.renew(redisTemplate, LOCK_KEY, token, LOCK_TTL)) {
+                log.warn("notification archive lock lost, stopping");
+                break;
+            }
+            int moved = notificationMapper.archiveRead(before, batchSize);
+            movedCounter.increment(moved);
+            total += moved;
+            // 不满一批说明已经移完
+            if (moved < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+}
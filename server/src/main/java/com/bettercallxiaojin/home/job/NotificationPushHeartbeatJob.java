@@ -0,0 +1,21 @@
+package com.bettercallxiaojin.home.job;
+
+import com.bettercallxiaojin.home.push.NotificationPushHub;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class NotificationPushHeartbeatJob {
+
+    private final NotificationPushHub notificationPushHub;
+
+    /**
+     * 定期发送注释行，防止代理因空闲断开连接，同时及时清理已断开的连接
+     */
+    @Scheduled(fixedDelay = 25_000)
+    public void heartbeat() {
+        notificationPushHub.heartbeat();
+    }
+}
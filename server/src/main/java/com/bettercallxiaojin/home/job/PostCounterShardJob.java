@@ -0,0 +1,69 @@
+package com.bettercallxiaojin.home.job;
+
+import com.bettercallxiaojin.home.common.util.RedisLockUtil;
+import com.bettercallxiaojin.home.counter.PostCounterShards;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PostCounterShardJob {
+
+    private static final String LOCK_KEY = "post:counter:fold:lock";
+    private static final Duration LOCK_TTL = Duration.ofSeconds(25);
+    // 每批合并的槽数和每次运行的批数上限，积压的部分留给下一次运行
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_BATCHES = 50;
+
+    private final PostCounterShards postCounterShards;
+    private final StringRedisTemplate redisTemplate;
+
+    @Scheduled(fixedDelay = 5_000)
+    public void refreshShardedPosts() {
+        try {
+            postCounterShards.refreshShardedPosts();
+        } catch (Exception e) {
+            log.warn("refresh sharded posts failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 多实例部署时只有拿到锁的实例执行合并，分批进行，每批之前续期
+     */
+    @Scheduled(fixedDelay = 30_000, initialDelay = 30_000)
+    public void foldBack() {
+        String token = RedisLockUtil.tryLock(redisTemplate, LOCK_KEY, LOCK_TTL);
+        if (token == null) {
+            return;
+        }
+        try {
+            long foldStartedAt = System.currentTimeMillis();
+            int total = 0;
+            for (int i = 0; i < MAX_BATCHES; i++) {
+                if (!RedisLockUtil.renew(redisTemplate, LOCK_KEY, token, LOCK_TTL)) {
+                    log.warn("counter shard fold lock lost, stopping");
+                    break;
+                }
+                int folded = postCounterShards.foldBack(BATCH_SIZE);
+                if (folded == 0) {
+                    break;
+                }
+                total += folded;
+            }
+            if (total > 0) {
+                log.info("folded counter shards of {} posts", total);
+            }
+            postCounterShards.removeCooledDown(foldStartedAt);
+        } catch (Exception e) {
+            log.warn("fold counter shards failed: {}", e.getMessage());
+        } finally {
+            RedisLockUtil.unlock(redisTemplate, LOCK_KEY, token);
+        }
+    }
+}
@@ -4,7 +4,9 @@ import com.bettercallxiaojin.home.pojo.entity.Comment;
 import com.bettercallxiaojin.home.pojo.entity.Post;
 import org.apache.ibatis.annotations.*;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface CommentMapper {
@@ -16,12 +18,43 @@ public interface CommentMapper {
     @Select("SELECT * FROM comment WHERE id = #{id}")
     Comment selectById(String id);
 
+    @Select({
+            "<script>",
+            "SELECT * FROM comment WHERE id IN",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>",
+            "#{id}",
+            "</foreach>",
+            "</script>"
+    })
+    List<Comment> selectByIds(@Param("ids") Collection<String> ids);
+
+    @Select({
+            "<script>",
+            "SELECT id, post_id FROM comment WHERE id IN",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>",
+            "#{id}",
+            "</foreach>",
+            "</script>"
+    })
+    List<Comment> selectPostIdsByIds(@Param("ids") Collection<String> ids);
+
     @Update("UPDATE comment SET content = #{content}, updated_at = #{updatedAt} WHERE id = #{id}")
     int update(Comment comment);
 
     @Update("UPDATE comment SET like_count = like_count + #{increment} WHERE id = #{id}")
     int updateLikeCount(@Param("id") String id, @Param("increment") Integer increment);
 
+    @Update({
+            "<script>",
+            "UPDATE comment AS c SET like_count = c.like_count + v.delta FROM (VALUES",
+            "<foreach collection='deltas' index='id' item='delta' separator=','>",
+            "(#{id}, #{delta})",
+            "</foreach>",
+            ") AS v(id, delta) WHERE c.id = v.id",
+            "</script>"
+    })
+    int batchUpdateLikeCount(@Param("deltas") Map<String, Long> deltas);
+
     @Update("UPDATE comment SET status = #{status} WHERE id = #{commentId}")
     int updateStatus(String commentId, Integer status);
 
@@ -0,0 +1,19 @@
+package com.bettercallxiaojin.home.mapper;
+
+import org.apache.ibatis.annotations.*;
+
+import java.time.LocalDateTime;
+
+@Mapper
+public interface LikeFlushLogMapper {
+
+    /**
+     * 和点赞计数在同一个事务中写入
+     * @return 0 表示这个批次已经落库过
+     */
+    @Insert("INSERT INTO like_flush_log (flush_id, applied_at) VALUES (#{flushId}, now()) ON CONFLICT (flush_id) DO NOTHING")
+    int insert(@Param("flushId") String flushId);
+
+    @Delete("DELETE FROM like_flush_log WHERE applied_at < #{before}")
+    int deleteBefore(@Param("before") LocalDateTime before);
+}
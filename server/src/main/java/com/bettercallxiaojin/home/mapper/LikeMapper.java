@@ -3,10 +3,15 @@ package com.bettercallxiaojin.home.mapper;
 import com.bettercallxiaojin.home.pojo.entity.Organization;
 import org.apache.ibatis.annotations.*;
 
+import java.util.List;
+
 @Mapper
 public interface LikeMapper {
+    /**
+     * 已经点过赞时不插入，返回 0
+     */
     @Insert("INSERT INTO like_record (user_id, target_id, target_type) " +
-            "VALUES (#{userId}, #{targetId}, #{targetType})")
+            "VALUES (#{userId}, #{targetId}, #{targetType}) ON CONFLICT DO NOTHING")
     int insert(String userId, String targetId, Integer targetType);
 
     @Delete("DELETE FROM like_record WHERE user_id = #{userId} AND target_type = #{targetType} AND target_id = #{targetId}")
@@ -14,4 +19,20 @@ public interface LikeMapper {
 
     @Select("SELECT COUNT(*) FROM like_record WHERE user_id = #{userId} AND target_id = #{targetId} AND target_type = #{targetType}")
     int selectLikeRecord(String userId, String targetId, Integer targetType);
+
+    @Select("SELECT target_id FROM like_record WHERE user_id = #{userId} AND target_type = #{targetType}")
+    List<String> selectTargetIdsByUser(@Param("userId") String userId, @Param("targetType") Integer targetType);
+
+    @Select({
+            "<script>",
+            "SELECT target_id FROM like_record WHERE user_id = #{userId} AND target_type = #{targetType}",
+            "AND target_id IN",
+            "<foreach collection='targetIds' item='targetId' open='(' separator=',' close=')'>",
+            "#{targetId}",
+            "</foreach>",
+            "</script>"
+    })
+    List<String> selectLikedTargetIds(@Param("userId") String userId,
+                                      @Param("targetType") Integer targetType,
+                                      @Param("targetIds") List<String> targetIds);
 }
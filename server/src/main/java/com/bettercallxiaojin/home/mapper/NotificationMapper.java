@@ -5,6 +5,7 @@ import org.apache.ibatis.annotations.*;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface NotificationMapper {
@@ -13,29 +14,234 @@ public interface NotificationMapper {
             "VALUES (#{id}, #{userId}, #{read}, #{type}, #{createdAt}, #{targetUserId}, #{targetId}, #{targetType}, #{targetContent}, #{content}, #{postId})")
     int insert(Notification notification);
 
-    @Update("UPDATE notification SET \"read\" = TRUE WHERE id =#{id}")
-    int updateRead(String id);
+    @Insert({
+            "<script>",
+            "INSERT INTO notification (id, user_id, \"read\", type, created_at, target_user_id, target_id, target_type, target_content, content, post_id) VALUES",
+            "<foreach collection='notifications' item='n' separator=','>",
+            "(#{n.id}, #{n.userId}, #{n.read}, #{n.type}, #{n.createdAt}, #{n.targetUserId}, #{n.targetId}, #{n.targetType}, #{n.targetContent}, #{n.content}, #{n.postId})",
+            "</foreach>",
+            "</script>"
+    })
+    int insertBatch(@Param("notifications") List<Notification> notifications);
 
-    @Update("UPDATE notification SET  \"read\" = TRUE WHERE user_id = #{userId} AND type = #{type}")
-    int updateReadBatch(String userId, Integer type);
+    /**
+     * 聚合行不存在时插入，人数为 0，触发用户由 addActors 写入；同一批内的 agg_key 必须已经合并去重
+     * @return 本次新插入的行的 user_id、agg_key
+     */
+    @Options(flushCache = Options.FlushCachePolicy.TRUE)
+    @Select({
+            "<script>",
+            "INSERT INTO notification (id, user_id, \"read\", type, created_at, target_user_id, target_id, target_type, target_content, content, post_id, agg_key, actor_count, actor_ids) VALUES",
+            "<foreach collection='notifications' item='n' separator=','>",
+            "(#{n.id}, #{n.userId}, #{n.read}, #{n.type}, #{n.createdAt}, #{n.targetUserId}, #{n.targetId}, #{n.targetType}, #{n.targetContent}, #{n.content}, #{n.postId}, #{n.aggKey}, 0, NULL)",
+            "</foreach>",
+            "ON CONFLICT (user_id, agg_key) WHERE agg_key IS NOT NULL DO NOTHING",
+            "RETURNING user_id, agg_key",
+            "</script>"
+    })
+    List<Notification> insertAggregated(@Param("notifications") List<Notification> notifications);
 
-    @Delete("DELETE FROM notification WHERE target_user_id = #{targetUserId} AND target_id = #{targetId} AND target_type = #{targetType} AND type = #{type}")
-    int deleteLike(@Param("targetUserId") String targetUserId, @Param("targetId") String targetId, @Param("targetType") Integer targetType, @Param("type") Integer type);
+    /**
+     * 把触发用户写入 notification_actor，已经在表里的用户不重复计数
+     * 有新增用户的聚合行按新增人数累加 actor_count，合并最近的触发用户并重新置为未读
+     * 需要和 insertAggregated 在同一个事务中执行
+     * @param notifications 合并后的聚合行，actorIds 为本批最近的触发用户
+     * @param actors 本批每个触发用户一条，targetUserId 为触发用户
+     * @return 有新增用户的行的 user_id、type、agg_key、actor_count
+     */
+    @Options(flushCache = Options.FlushCachePolicy.TRUE)
+    @Select({
+            "<script>",
+            "WITH added AS (",
+            "  INSERT INTO notification_actor (notification_id, actor_id)",
+            "  SELECT n.id, a.actor_id FROM notification n JOIN (VALUES",
+            "  <foreach collection='actors' item='a' separator=','>(#{a.userId}, #{a.aggKey}, #{a.targetUserId})</foreach>",
+            "  ) AS a (user_id, agg_key, actor_id) ON n.user_id = a.user_id AND n.agg_key = a.agg_key",
+            "  ON CONFLICT DO NOTHING",
+            "  RETURNING notification_id",
+            "), counted AS (",
+            "  SELECT notification_id, COUNT(*) AS added FROM added GROUP BY notification_id",
+            ")",
+            "UPDATE notification AS n SET",
+            "actor_count = n.actor_count + c.added,",
+            "actor_ids = (SELECT string_agg(t.actor_id, ',' ORDER BY t.ord) FROM (",
+            "  SELECT actor_id, MIN(ord) AS ord FROM unnest(string_to_array(v.actor_ids || ',' || COALESCE(n.actor_ids, ''), ',')) WITH ORDINALITY AS u (actor_id, ord)",
+            "  WHERE actor_id &lt;&gt; '' GROUP BY actor_id ORDER BY MIN(ord) LIMIT #{maxActors}) AS t),",
+            "target_user_id = v.target_user_id,",
+            "target_content = v.target_content,",
+            "created_at = v.created_at,",
+            "updated_at = now(),",
+            "notified_at = now(),",
+            "\"read\" = FALSE",
+            "FROM counted AS c, (VALUES",
+            "<foreach collection='notifications' item='n' separator=','>(#{n.userId}, #{n.aggKey}, #{n.actorIds}, #{n.targetUserId}, #{n.targetContent}, #{n.createdAt}::timestamp)</foreach>",
+            ") AS v (user_id, agg_key, actor_ids, target_user_id, target_content, created_at)",
+            "WHERE n.id = c.notification_id AND n.user_id = v.user_id AND n.agg_key = v.agg_key",
+            "RETURNING n.user_id, n.type, n.agg_key, n.actor_count",
+            "</script>"
+    })
+    List<Notification> addActors(@Param("notifications") List<Notification> notifications,
+                                 @Param("actors") List<Notification> actors,
+                                 @Param("maxActors") int maxActors);
 
-    @Delete("DELETE FROM notification WHERE target_user_id = #{targetUserId} AND user_id = #{userId} AND type = #{type}")
-    int deleteFollow(@Param("targetUserId") String targetUserId, @Param("userId") String userId, @Param("type") Integer type);
+    /**
+     * @return 本次从未读变为已读的通知，原本已读（包括早于已读水位）或不存在时返回 null
+     */
+    @Select("UPDATE notification SET \"read\" = TRUE WHERE id = #{id} AND \"read\" = FALSE " +
+            "AND NOT EXISTS (SELECT 1 FROM notification_read_mark m WHERE m.user_id = notification.user_id AND m.type = notification.type AND m.read_up_to >= notification.created_at AND m.marked_at >= notification.notified_at) " +
+            "RETURNING user_id, type")
+    Notification updateRead(String id);
 
-    @Select("SELECT * FROM notification WHERE user_id = #{userId} AND type = #{type} ORDER BY created_at DESC")
-    List<Notification> selectByUserAndType(@Param("userId") String userId, @Param("type") Integer type);
+    /**
+     * 批量设为已读，只处理属于该用户的通知
+     * @return 本次从未读变为已读的通知
+     */
+    @Select({
+            "<script>",
+            "UPDATE notification SET \"read\" = TRUE WHERE user_id = #{userId} AND \"read\" = FALSE AND id IN",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "AND NOT EXISTS (SELECT 1 FROM notification_read_mark m WHERE m.user_id = notification.user_id AND m.type = notification.type AND m.read_up_to >= notification.created_at AND m.marked_at >= notification.notified_at)",
+            "RETURNING user_id, type",
+            "</script>"
+    })
+    List<Notification> updateReadByIds(@Param("userId") String userId, @Param("ids") List<String> ids);
 
-    @Select("SELECT * FROM notification WHERE user_id = #{userId} AND type IN (#{type1}, #{type2}) ORDER BY created_at DESC")
+    /**
+     * 已读水位：该用户该类型 created_at 不晚于水位、并且在设置水位之前已经入库的通知都视为已读，不再逐行更新；水位只前进不后退
+     * marked_at 记录水位前进时的数据库时间，和通知的 notified_at 比较，设置水位之后才入库的通知即使 created_at 更早也仍然未读
+     */
+    @Insert("INSERT INTO notification_read_mark (user_id, type, read_up_to, marked_at) VALUES (#{userId}, #{type}, #{readUpTo}, now()) " +
+            "ON CONFLICT (user_id, type) DO UPDATE SET read_up_to = GREATEST(notification_read_mark.read_up_to, EXCLUDED.read_up_to), " +
+            "marked_at = CASE WHEN EXCLUDED.read_up_to >= notification_read_mark.read_up_to THEN EXCLUDED.marked_at ELSE notification_read_mark.marked_at END")
+    int upsertReadMark(@Param("userId") String userId, @Param("type") Integer type, @Param("readUpTo") LocalDateTime readUpTo);
+
+    /**
+     * 取消点赞：删除未聚合的旧通知；聚合通知从 notification_actor 中删除该用户并减少人数，只剩该用户时整行删除
+     * 删除的行记入 notification_tombstone，供增量同步返回
+     * @return 被删除的行
+     */
+    @Select("WITH removed AS (" +
+            "  DELETE FROM notification_actor a USING notification n WHERE a.notification_id = n.id AND a.actor_id = #{targetUserId} " +
+            "  AND n.target_id = #{targetId} AND n.target_type = #{targetType} AND n.type = #{type} AND n.agg_key IS NOT NULL " +
+            "  RETURNING a.notification_id" +
+            "), single AS (" +
+            "  DELETE FROM notification WHERE target_id = #{targetId} AND target_type = #{targetType} AND type = #{type} " +
+            "  AND (agg_key IS NULL AND target_user_id = #{targetUserId} " +
+            "       OR actor_count <= 1 AND id IN (SELECT notification_id FROM removed)) " +
+            "  RETURNING id, user_id, type, (\"read\" OR EXISTS (SELECT 1 FROM notification_read_mark m WHERE m.user_id = notification.user_id AND m.type = notification.type AND m.read_up_to >= notification.created_at AND m.marked_at >= notification.notified_at)) AS \"read\"" +
+            "), shrunk AS (" +
+            "  UPDATE notification SET actor_count = actor_count - 1, updated_at = now(), " +
+            "  actor_ids = array_to_string(array_remove(string_to_array(actor_ids, ','), #{targetUserId}), ',') " +
+            "  WHERE actor_count > 1 AND id IN (SELECT notification_id FROM removed)" +
+            "), tombstone AS (" +
+            "  INSERT INTO notification_tombstone (notification_id, user_id, deleted_at) SELECT id, user_id, now() FROM single" +
+            ") SELECT * FROM single")
+    List<Notification> deleteLike(@Param("targetUserId") String targetUserId, @Param("targetId") String targetId, @Param("targetType") Integer targetType, @Param("type") Integer type);
+
+    /**
+     * 取消关注，处理方式同 deleteLike
+     */
+    @Select("WITH removed AS (" +
+            "  DELETE FROM notification_actor a USING notification n WHERE a.notification_id = n.id AND a.actor_id = #{targetUserId} " +
+            "  AND n.user_id = #{userId} AND n.type = #{type} AND n.agg_key IS NOT NULL " +
+            "  RETURNING a.notification_id" +
+            "), single AS (" +
+            "  DELETE FROM notification WHERE user_id = #{userId} AND type = #{type} " +
+            "  AND (agg_key IS NULL AND target_user_id = #{targetUserId} " +
+            "       OR actor_count <= 1 AND id IN (SELECT notification_id FROM removed)) " +
+            "  RETURNING id, user_id, type, (\"read\" OR EXISTS (SELECT 1 FROM notification_read_mark m WHERE m.user_id = notification.user_id AND m.type = notification.type AND m.read_up_to >= notification.created_at AND m.marked_at >= notification.notified_at)) AS \"read\"" +
+            "), shrunk AS (" +
+            "  UPDATE notification SET actor_count = actor_count - 1, updated_at = now(), " +
+            "  actor_ids = array_to_string(array_remove(string_to_array(actor_ids, ','), #{targetUserId}), ',') " +
+            "  WHERE actor_count > 1 AND id IN (SELECT notification_id FROM removed)" +
+            "), tombstone AS (" +
+            "  INSERT INTO notification_tombstone (notification_id, user_id, deleted_at) SELECT id, user_id, now() FROM single" +
+            ") SELECT * FROM single")
+    List<Notification> deleteFollow(@Param("targetUserId") String targetUserId, @Param("userId") String userId, @Param("type") Integer type);
+
+    /**
+     * 按 (created_at, id) 倒序的游标分页，createdAt 为 null 时返回第一页
+     */
+    @Select({
+            "<script>",
+            "SELECT n.id, n.user_id, (n.\"read\" OR COALESCE(n.created_at &lt;= m.read_up_to AND n.notified_at &lt;= m.marked_at, FALSE)) AS \"read\", n.type, n.created_at, n.target_user_id, n.target_id, n.target_type, n.target_content, n.content, n.post_id, n.agg_key, n.actor_count, n.actor_ids",
+            "FROM notification n LEFT JOIN notification_read_mark m ON m.user_id = n.user_id AND m.type = n.type",
+            "WHERE n.user_id = #{userId} AND n.type IN",
+            "<foreach collection='types' item='type' open='(' separator=',' close=')'>#{type}</foreach>",
+            "<if test='createdAt != null'>",
+            "AND (n.created_at, n.id) &lt; (#{createdAt}, #{id})",
+            "</if>",
+            "ORDER BY n.created_at DESC, n.id DESC LIMIT #{pageSize}",
+            "</script>"
+    })
     List<Notification> selectByUserAndTypes(@Param("userId") String userId,
-                                            @Param("type1") Integer type1,
-                                            @Param("type2") Integer type2);
+                                            @Param("types") List<Integer> types,
+                                            @Param("createdAt") LocalDateTime createdAt,
+                                            @Param("id") String id,
+                                            @Param("pageSize") int pageSize);
+
+    /**
+     * 归档表的游标分页，条件和排序同 selectByUserAndTypes；归档的通知都是已读的
+     */
+    @Select({
+            "<script>",
+            "SELECT id, user_id, \"read\", type, created_at, target_user_id, target_id, target_type, target_content, content, post_id, agg_key, actor_count, actor_ids",
+            "FROM notification_archive WHERE user_id = #{userId} AND type IN",
+            "<foreach collection='types' item='type' open='(' separator=',' close=')'>#{type}</foreach>",
+            "<if test='createdAt != null'>",
+            "AND (created_at, id) &lt; (#{createdAt}, #{id})",
+            "</if>",
+            "ORDER BY created_at DESC, id DESC LIMIT #{pageSize}",
+            "</script>"
+    })
+    List<Notification> selectArchivedByUserAndTypes(@Param("userId") String userId,
+                                                    @Param("types") List<Integer> types,
+                                                    @Param("createdAt") LocalDateTime createdAt,
+                                                    @Param("id") String id,
+                                                    @Param("pageSize") int pageSize);
+
+    /**
+     * 把最早的一批已读（包括早于已读水位）且早于 before 的通知移到归档表，归档时统一标为已读，SKIP LOCKED 避免和正在进行的更新互相等待
+     * @return 移动的行数
+     */
+    @Insert("WITH moved AS (" +
+            "  DELETE FROM notification WHERE id IN (" +
+            "    SELECT id FROM notification WHERE created_at < #{before} " +
+            "    AND (\"read\" = TRUE OR EXISTS (SELECT 1 FROM notification_read_mark m WHERE m.user_id = notification.user_id AND m.type = notification.type AND m.read_up_to >= notification.created_at AND m.marked_at >= notification.notified_at)) " +
+            "    ORDER BY created_at LIMIT #{limit} FOR UPDATE SKIP LOCKED" +
+            "  ) RETURNING id, user_id, TRUE, type, created_at, target_user_id, target_id, target_type, target_content, content, post_id, agg_key, actor_count, actor_ids" +
+            ") INSERT INTO notification_archive (id, user_id, \"read\", type, created_at, target_user_id, target_id, target_type, target_content, content, post_id, agg_key, actor_count, actor_ids) " +
+            "SELECT * FROM moved")
+    int archiveRead(@Param("before") LocalDateTime before, @Param("limit") int limit);
 
-    @Select("SELECT COUNT(*) FROM notification WHERE read = false AND user_id = #{userId}")
+    /**
+     * 增量同步：since 之后插入或被更新（聚合行新增、减少触发用户）的通知，最多 limit 条
+     * updated_at 由数据库在写入时赋值，since 也必须是数据库时间，见 selectNow
+     */
+    @Select("SELECT n.id, n.user_id, (n.\"read\" OR COALESCE(n.created_at <= m.read_up_to AND n.notified_at <= m.marked_at, FALSE)) AS \"read\", n.type, n.created_at, n.target_user_id, n.target_id, n.target_type, n.target_content, n.content, n.post_id, n.agg_key, n.actor_count, n.actor_ids " +
+            "FROM notification n LEFT JOIN notification_read_mark m ON m.user_id = n.user_id AND m.type = n.type " +
+            "WHERE n.user_id = #{userId} AND n.updated_at > #{since} ORDER BY n.updated_at DESC, n.id DESC LIMIT #{limit}")
+    List<Notification> selectSince(@Param("userId") String userId, @Param("since") LocalDateTime since, @Param("limit") int limit);
+
+    /**
+     * 数据库当前时间，和 updated_at、deleted_at 使用同一个时钟
+     */
+    @Select("SELECT LOCALTIMESTAMP")
+    LocalDateTime selectNow();
+
+    @Select("SELECT notification_id FROM notification_tombstone WHERE user_id = #{userId} AND deleted_at > #{since}")
+    List<String> selectDeletedIdsSince(@Param("userId") String userId, @Param("since") LocalDateTime since);
+
+    @Delete("DELETE FROM notification_tombstone WHERE deleted_at < #{before}")
+    int deleteTombstonesBefore(@Param("before") LocalDateTime before);
+
+    @Select("SELECT COUNT(*) FROM notification WHERE read = false AND user_id = #{userId} AND NOT EXISTS (SELECT 1 FROM notification_read_mark m WHERE m.user_id = notification.user_id AND m.type = notification.type AND m.read_up_to >= notification.created_at AND m.marked_at >= notification.notified_at)")
     Integer countAllUnread(@Param("userId") String userId);
 
-    @Select("SELECT COUNT(*) FROM notification WHERE read = false AND type = #{type} AND user_id = #{userId}")
+    @Select("SELECT COUNT(*) FROM notification WHERE read = false AND type = #{type} AND user_id = #{userId} AND NOT EXISTS (SELECT 1 FROM notification_read_mark m WHERE m.user_id = notification.user_id AND m.type = notification.type AND m.read_up_to >= notification.created_at AND m.marked_at >= notification.notified_at)")
     Integer countUnreadByType(@Param("userId") String userId, @Param("type") Integer type);
+
+    @Select("SELECT type, COUNT(*) AS count FROM notification WHERE read = false AND user_id = #{userId} " +
+            "AND NOT EXISTS (SELECT 1 FROM notification_read_mark m WHERE m.user_id = notification.user_id AND m.type = notification.type AND m.read_up_to >= notification.created_at AND m.marked_at >= notification.notified_at) GROUP BY type")
+    List<Map<String, Object>> countUnreadGroupByType(@Param("userId") String userId);
 }
\ No newline at end of file
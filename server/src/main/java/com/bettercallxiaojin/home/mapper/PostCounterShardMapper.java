@@ -0,0 +1,63 @@
+package com.bettercallxiaojin.home.mapper;
+
+import com.bettercallxiaojin.home.pojo.entity.Post;
+import org.apache.ibatis.annotations.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+@Mapper
+public interface PostCounterShardMapper {
+
+    @Insert("INSERT INTO post_counter_shard (post_id, slot, like_delta, comment_delta) " +
+            "VALUES (#{postId}, #{slot}, #{likeDelta}, #{commentDelta}) " +
+            "ON CONFLICT (post_id, slot) DO UPDATE SET " +
+            "like_delta = post_counter_shard.like_delta + EXCLUDED.like_delta, " +
+            "comment_delta = post_counter_shard.comment_delta + EXCLUDED.comment_delta")
+    int upsert(@Param("postId") String postId,
+               @Param("slot") int slot,
+               @Param("likeDelta") long likeDelta,
+               @Param("commentDelta") long commentDelta);
+
+    /**
+     * 每个帖子随机写入一个槽
+     */
+    @Insert({
+            "<script>",
+            "INSERT INTO post_counter_shard (post_id, slot, like_delta, comment_delta) VALUES",
+            "<foreach collection='deltas' index='postId' item='delta' separator=','>",
+            "(#{postId}, floor(random() * #{slots})::int, #{delta}, 0)",
+            "</foreach>",
+            "ON CONFLICT (post_id, slot) DO UPDATE SET like_delta = post_counter_shard.like_delta + EXCLUDED.like_delta",
+            "</script>"
+    })
+    int batchAddLikeDelta(@Param("deltas") Map<String, Long> deltas, @Param("slots") int slots);
+
+    @Select({
+            "<script>",
+            "SELECT post_id AS id, SUM(like_delta) AS likeCount, SUM(comment_delta) AS commentCount",
+            "FROM post_counter_shard WHERE post_id IN",
+            "<foreach collection='postIds' item='postId' open='(' separator=',' close=')'>",
+            "#{postId}",
+            "</foreach>",
+            "GROUP BY post_id",
+            "</script>"
+    })
+    List<Post> sumByPostIds(@Param("postIds") Collection<String> postIds);
+
+    /**
+     * 把最多 limit 个槽的增量合并回 post 表并删除这些槽，单条语句完成，返回合并过的帖子ID
+     * 正在被写入的槽跳过，留给下一批，不阻塞点赞、评论的写入
+     * 语句会修改数据，需要刷新 MyBatis 的本地缓存
+     */
+    @Options(flushCache = Options.FlushCachePolicy.TRUE)
+    @Select("WITH batch AS (SELECT post_id, slot FROM post_counter_shard LIMIT #{limit} FOR UPDATE SKIP LOCKED), " +
+            "folded AS (DELETE FROM post_counter_shard AS s USING batch AS b WHERE s.post_id = b.post_id AND s.slot = b.slot " +
+            "RETURNING s.post_id, s.like_delta, s.comment_delta), " +
+            "sums AS (SELECT post_id, SUM(like_delta) AS like_delta, SUM(comment_delta) AS comment_delta FROM folded GROUP BY post_id), " +
+            "updated AS (UPDATE post AS p SET like_count = p.like_count + sums.like_delta, comment_count = p.comment_count + sums.comment_delta " +
+            "FROM sums WHERE p.id = sums.post_id) " +
+            "SELECT post_id FROM sums")
+    List<String> foldBack(@Param("limit") int limit);
+}
@@ -5,7 +5,10 @@ import com.bettercallxiaojin.home.pojo.VO.SimplePostVO;
 import com.bettercallxiaojin.home.pojo.entity.Post;
 import org.apache.ibatis.annotations.*;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface PostMapper {
@@ -26,6 +29,27 @@ public interface PostMapper {
     @Update("UPDATE post SET like_count = like_count + #{increment} WHERE id = #{id}")
     int updateLikeCount(@Param("id") String id, @Param("increment") Integer increment);
 
+    @Update({
+            "<script>",
+            "UPDATE post AS p SET like_count = p.like_count + v.delta FROM (VALUES",
+            "<foreach collection='deltas' index='id' item='delta' separator=','>",
+            "(#{id}, #{delta})",
+            "</foreach>",
+            ") AS v(id, delta) WHERE p.id = v.id",
+            "</script>"
+    })
+    int batchUpdateLikeCount(@Param("deltas") Map<String, Long> deltas);
+
+    @Select({
+            "<script>",
+            "SELECT id, user_id FROM post WHERE id IN",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>",
+            "#{id}",
+            "</foreach>",
+            "</script>"
+    })
+    List<Post> selectUserIdsByIds(@Param("ids") Collection<String> ids);
+
     @Update("UPDATE post SET comment_count = comment_count + #{increment} WHERE id = #{id}")
     int updateCommentCount(@Param("id") String id, @Param("increment") Integer increment);
 
@@ -41,6 +65,46 @@ public interface PostMapper {
     List<Post> selectLatest(@Param("pageSize") int pageSize,
                          @Param("offset") int offset);
 
+    @Select("SELECT id, created_at FROM post ORDER BY created_at DESC LIMIT #{limit}")
+    List<Post> selectLatestIds(@Param("limit") int limit);
+
+    /**
+     * 时间窗口内热度最高的帖子，排序表达式与 HotPostRanking.score 一致
+     */
+    @Select("SELECT id, like_count, comment_count, created_at FROM post WHERE created_at > #{since} " +
+            "ORDER BY (like_count + 2 * comment_count + 1) / power(GREATEST(EXTRACT(EPOCH FROM (#{now} - created_at)) / 3600, 0) + 2, 1.5) DESC, id DESC " +
+            "LIMIT #{limit}")
+    List<Post> selectHottestAfter(@Param("since") LocalDateTime since, @Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Select("SELECT id, created_at FROM post WHERE user_id = #{userId} ORDER BY created_at DESC LIMIT #{limit}")
+    List<Post> selectRecentIdsByUserId(@Param("userId") String userId, @Param("limit") int limit);
+
+    @Select({
+            "<script>",
+            "SELECT id, created_at FROM post",
+            "WHERE user_id IN ",
+            "<foreach collection='userIds' item='userId' open='(' separator=',' close=')'>",
+            "#{userId}",
+            "</foreach>",
+            "ORDER BY created_at DESC LIMIT #{limit}",
+            "</script>"
+    })
+    List<Post> selectRecentIdsByUserIds(@Param("userIds") List<String> userIds, @Param("limit") int limit);
+
+    @Select({
+            "<script>",
+            "SELECT id, user_id, created_at FROM (",
+            "SELECT id, user_id, created_at, ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY created_at DESC) AS rn",
+            "FROM post WHERE user_id IN ",
+            "<foreach collection='userIds' item='userId' open='(' separator=',' close=')'>",
+            "#{userId}",
+            "</foreach>",
+            ") t WHERE rn &lt;= #{limit}",
+            "ORDER BY user_id, created_at DESC",
+            "</script>"
+    })
+    List<Post> selectRecentIdsPerUser(@Param("userIds") List<String> userIds, @Param("limit") int limit);
+
     @Select("SELECT * FROM post ORDER BY like_count DESC LIMIT #{pageSize} OFFSET #{offset}")
     List<Post> selectFavorite(@Param("pageSize") int pageSize,
                          @Param("offset") int offset);
@@ -64,7 +128,66 @@ public interface PostMapper {
 
     @Select({
             "<script>",
-            "SELECT id, user_id AS userId, title, content, like_count AS likeCount, comment_count AS commentCount, created_at AS createdAt",
+            "SELECT * FROM post WHERE user_id = #{userId}",
+            "<if test='createdAt != null'>",
+            "AND (created_at, id) &lt; (#{createdAt}, #{id})",
+            "</if>",
+            "ORDER BY created_at DESC, id DESC LIMIT #{pageSize}",
+            "</script>"
+    })
+    List<Post> selectByUserIdAfter(@Param("userId") String userId,
+                                   @Param("createdAt") LocalDateTime createdAt,
+                                   @Param("id") String id,
+                                   @Param("pageSize") int pageSize);
+
+    @Select({
+            "<script>",
+            "SELECT * FROM post",
+            "<if test='createdAt != null'>",
+            "WHERE (created_at, id) &lt; (#{createdAt}, #{id})",
+            "</if>",
+            "ORDER BY created_at DESC, id DESC LIMIT #{pageSize}",
+            "</script>"
+    })
+    List<Post> selectLatestAfter(@Param("createdAt") LocalDateTime createdAt,
+                                 @Param("id") String id,
+                                 @Param("pageSize") int pageSize);
+
+    @Select({
+            "<script>",
+            "SELECT * FROM post",
+            "<if test='likeCount != null'>",
+            "WHERE (like_count, id) &lt; (#{likeCount}, #{id})",
+            "</if>",
+            "ORDER BY like_count DESC, id DESC LIMIT #{pageSize}",
+            "</script>"
+    })
+    List<Post> selectFavoriteAfter(@Param("likeCount") Integer likeCount,
+                                   @Param("id") String id,
+                                   @Param("pageSize") int pageSize);
+
+    @Select({
+            "<script>",
+            "SELECT * FROM post",
+            "WHERE user_id IN ",
+            "<foreach collection='userIds' item='userId' open='(' separator=',' close=')'>",
+            "#{userId}",
+            "</foreach>",
+            "<if test='createdAt != null'>",
+            "AND (created_at, id) &lt; (#{createdAt}, #{id})",
+            "</if>",
+            "ORDER BY created_at DESC, id DESC LIMIT #{pageSize}",
+            "</script>"
+    })
+    List<Post> selectByUserIdsAfter(@Param("userIds") List<String> userIds,
+                                    @Param("createdAt") LocalDateTime createdAt,
+                                    @Param("id") String id,
+                                    @Param("pageSize") int pageSize);
+
+
+    @Select({
+            "<script>",
+            "SELECT id, user_id AS userId, title, preview, like_count AS likeCount, comment_count AS commentCount, created_at AS createdAt, updated_at AS updatedAt",
             "FROM post",
             "WHERE id IN",
             "<foreach collection='postIds' item='id' open='(' separator=',' close=')'>",
@@ -5,7 +5,9 @@ import com.bettercallxiaojin.home.pojo.entity.Reply;
 import org.apache.ibatis.annotations.*;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface ReplyMapper {
@@ -17,15 +19,56 @@ public interface ReplyMapper {
     @Select("SELECT user_id FROM reply WHERE id = #{id}")
     String selectUserById(String id);
 
+    @Select({
+            "<script>",
+            "SELECT id, user_id FROM reply WHERE id IN",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>",
+            "#{id}",
+            "</foreach>",
+            "</script>"
+    })
+    List<Reply> selectUserIdsByIds(@Param("ids") List<String> ids);
+
     @Select("SELECT * FROM reply WHERE id = #{id}")
     Reply selectById(String id);
 
+    @Select({
+            "<script>",
+            "SELECT * FROM reply WHERE id IN",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>",
+            "#{id}",
+            "</foreach>",
+            "</script>"
+    })
+    List<Reply> selectByIds(@Param("ids") Collection<String> ids);
+
+    @Select({
+            "<script>",
+            "SELECT id, comment_id FROM reply WHERE id IN",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>",
+            "#{id}",
+            "</foreach>",
+            "</script>"
+    })
+    List<Reply> selectCommentIdsByIds(@Param("ids") Collection<String> ids);
+
     @Update("UPDATE reply SET content = #{content}, updated_at = #{updatedAt} WHERE id = #{id}")
     int update(String content, LocalDateTime updatedAt, String id);
 
     @Update("UPDATE reply SET like_count = like_count + #{increment} WHERE id = #{id}")
     int updateLikeCount(@Param("id") String id, @Param("increment") Integer increment);
 
+    @Update({
+            "<script>",
+            "UPDATE reply AS r SET like_count = r.like_count + v.delta FROM (VALUES",
+            "<foreach collection='deltas' index='id' item='delta' separator=','>",
+            "(#{id}, #{delta})",
+            "</foreach>",
+            ") AS v(id, delta) WHERE r.id = v.id",
+            "</script>"
+    })
+    int batchUpdateLikeCount(@Param("deltas") Map<String, Long> deltas);
+
     @Update("UPDATE reply SET status = #{status} WHERE id = #{id}")
     int updateStatus(String id, Integer status);
 
@@ -7,6 +7,7 @@ import com.bettercallxiaojin.home.pojo.entity.User;
 import org.apache.ibatis.annotations.*;
 
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface UserMapper {
@@ -39,6 +40,17 @@ public interface UserMapper {
     @Update("UPDATE user_db set like_count = like_count + #{i} WHERE id = #{userId}")
     void updateLikeCount(Integer i, String userId);
 
+    @Update({
+            "<script>",
+            "UPDATE user_db AS u SET like_count = u.like_count + v.delta FROM (VALUES",
+            "<foreach collection='deltas' index='id' item='delta' separator=','>",
+            "(#{id}, #{delta})",
+            "</foreach>",
+            ") AS v(id, delta) WHERE u.id = v.id",
+            "</script>"
+    })
+    int batchUpdateLikeCount(@Param("deltas") Map<String, Long> deltas);
+
     @Update("UPDATE user_db set email = #{email} WHERE id = #{userId}")
     void updateEmail(String userId, String email);
 
@@ -0,0 +1,27 @@
+package com.bettercallxiaojin.home.pojo.DTO;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LikeStatusBatchDTO {
+    @NotNull(message = "targetType cannot be empty")
+    @Min(1)
+    @Max(3)
+    private Integer targetType;
+
+    @NotEmpty(message = "targetIds cannot be empty")
+    @Size(max = 200, message = "at most 200 targetIds")
+    private List<@NotBlank(message = "targetId cannot be empty") String> targetIds;
+}
@@ -0,0 +1,18 @@
+package com.bettercallxiaojin.home.pojo.DTO;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationReadDTO {
+    @NotEmpty(message = "ids cannot be empty")
+    @Size(max = 200, message = "at most 200 ids")
+    private List<String> ids;
+}
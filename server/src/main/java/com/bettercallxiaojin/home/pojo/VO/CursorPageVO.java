@@ -0,0 +1,16 @@
+package com.bettercallxiaojin.home.pojo.VO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageVO<T> {
+    private List<T> list;
+    // 为 null 表示没有下一页
+    private String nextCursor;
+}
@@ -0,0 +1,22 @@
+package com.bettercallxiaojin.home.pojo.VO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class NotificationSyncVO {
+    // 新增或被更新的通知，客户端按 id 覆盖
+    private List<NotificationVO> notifications;
+    // 已被删除的通知ID
+    private List<String> deletedIds;
+    // 下次同步时传回的水位
+    private LocalDateTime watermark;
+    // 为 true 时增量不可用（水位太旧或变化太多），客户端应重新拉取完整列表
+    private Boolean resync;
+}
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @NoArgsConstructor
@@ -21,4 +22,7 @@ public class NotificationVO {
     private String targetContent;
     private String content;
     private String postId;
+    // 聚合通知的触发人数，targetUser 为最近的一个
+    private Integer actorCount;
+    private List<SimpleUserVO> actorUsers;
 }
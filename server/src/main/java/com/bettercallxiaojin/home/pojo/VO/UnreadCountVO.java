@@ -0,0 +1,16 @@
+package com.bettercallxiaojin.home.pojo.VO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UnreadCountVO {
+    private Integer all;
+    private Integer like;
+    private Integer follow;
+    // 评论和回复合并为一个角标
+    private Integer comment;
+}
@@ -22,4 +22,9 @@ public class Notification {
     private String targetContent;
     private String content;
     private String postId;
+    // 聚合通知：同一目标在同一时间窗口内的点赞、关注合并为一行，评论和回复为 null
+    private String aggKey;
+    private Integer actorCount;
+    // 最近的几个触发用户ID，逗号分隔，最新的在前
+    private String actorIds;
 }
@@ -11,6 +11,10 @@ public class PageQuery {
     private String id;
     private Integer pageNum;
     private Integer pageSize;
+    // 不为 null 时使用游标分页，空字符串表示第一页
+    private String cursor;
+    // 排序方式，目前只用于 /post/list/favorite，hot 表示按热度排行
+    private String sort;
 
     private static final Integer DEFAULT_PAGE_NUM = 1;
     private static final Integer DEFAULT_PAGE_SIZE = 10;
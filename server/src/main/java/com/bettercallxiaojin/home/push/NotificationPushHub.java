@@ -0,0 +1,187 @@
+package com.bettercallxiaojin.home.push;
+
+import com.bettercallxiaojin.home.cache.UnreadCounterCache;
+import com.bettercallxiaojin.home.pojo.VO.UnreadCountVO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 通知的 SSE 推送：每个在线用户保持少量长连接，有新通知或未读数变化时推送，客户端不再需要轮询
+ * 写通知的节点不一定持有该用户的连接，所以通过 Redis pub/sub 广播，持有连接的节点负责推送
+ * 消息格式：userId|type，type 为新通知的类型，只有未读数变化时为 0
+ * 发送在单独的线程池中执行，同一用户的一次推送在同一个任务里按顺序发送
+ */
+@Component
+@Slf4j
+public class NotificationPushHub implements MessageListener {
+
+    public static final String CHANNEL = "notification:push";
+    private static final String SEPARATOR = "|";
+    private static final int BADGE_ONLY = 0;
+    private static final Duration EMITTER_TIMEOUT = Duration.ofMinutes(30);
+
+    private final StringRedisTemplate redisTemplate;
+    private final UnreadCounterCache unreadCounterCache;
+    private final TaskExecutor pushExecutor;
+    private final int maxConnections;
+    private final int maxConnectionsPerUser;
+
+    private final Map<String, List<SseEmitter>> emitters = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    public NotificationPushHub(StringRedisTemplate redisTemplate,
+                               UnreadCounterCache unreadCounterCache,
+                               @Qualifier("pushExecutor") TaskExecutor pushExecutor,
+                               MeterRegistry meterRegistry,
+                               @Value("${bettercallxiaojin.push.max-connections:2000}") int maxConnections,
+                               @Value("${bettercallxiaojin.push.max-connections-per-user:3}") int maxConnectionsPerUser) {
+        this.redisTemplate = redisTemplate;
+        this.unreadCounterCache = unreadCounterCache;
+        this.pushExecutor = pushExecutor;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        Gauge.builder("notification.push.connections", connections, AtomicInteger::get)
+                .description("Open notification SSE connections on this node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return 新的连接，本节点连接数已满时返回 null，客户端应退回轮询
+     */
+    public SseEmitter subscribe(String userId) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            return null;
+        }
+
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT.toMillis());
+        // 加入和移除都在 compute 中完成，不会加到刚被移除的列表里
+        List<SseEmitter> evicted = new ArrayList<>();
+        emitters.compute(userId, (k, userEmitters) -> {
+            List<SseEmitter> updated = userEmitters == null ? new CopyOnWriteArrayList<>() : userEmitters;
+            updated.add(emitter);
+            // 同一用户连接过多时关闭最早的连接
+            while (updated.size() > maxConnectionsPerUser) {
+                evicted.add(updated.remove(0));
+                connections.decrementAndGet();
+            }
+            return updated;
+        });
+        evicted.forEach(SseEmitter::complete);
+
+        emitter.onCompletion(() -> remove(userId, emitter));
+        emitter.onTimeout(() -> remove(userId, emitter));
+        emitter.onError(e -> remove(userId, emitter));
+
+        // 建立连接时先推一次当前的未读数
+        pushExecutor.execute(() -> send(userId, emitter,
+                SseEmitter.event().name("badge").data(unreadCounterCache.getBadges(userId), MediaType.APPLICATION_JSON)));
+        return emitter;
+    }
+
+    /**
+     * 有新通知写入
+     */
+    public void notifyNew(String userId, int type) {
+        publish(userId, type);
+    }
+
+    /**
+     * 只有未读数变化，例如已读、删除
+     */
+    public void notifyBadge(String userId) {
+        publish(userId, BADGE_ONLY);
+    }
+
+    public void heartbeat() {
+        emitters.forEach((userId, userEmitters) -> pushExecutor.execute(() -> {
+            for (SseEmitter emitter : userEmitters) {
+                send(userId, emitter, SseEmitter.event().comment("ping"));
+            }
+        }));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|");
+        if (parts.length != 2) {
+            log.warn("invalid notification push message");
+            return;
+        }
+        String userId = parts[0];
+        int type;
+        try {
+            type = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            log.warn("invalid notification push message: {}", e.getMessage());
+            return;
+        }
+
+        if (!emitters.containsKey(userId)) {
+            return;
+        }
+        // 读取未读数和发送都会阻塞，交给推送线程池
+        pushExecutor.execute(() -> push(userId, type));
+    }
+
+    private void push(String userId, int type) {
+        List<SseEmitter> userEmitters = emitters.get(userId);
+        if (userEmitters == null || userEmitters.isEmpty()) {
+            return;
+        }
+
+        UnreadCountVO badge = unreadCounterCache.getBadges(userId);
+        for (SseEmitter emitter : userEmitters) {
+            if (type != BADGE_ONLY) {
+                send(userId, emitter, SseEmitter.event().name("notification").data(Map.of("type", type), MediaType.APPLICATION_JSON));
+            }
+            send(userId, emitter, SseEmitter.event().name("badge").data(badge, MediaType.APPLICATION_JSON));
+        }
+    }
+
+    private void publish(String userId, int type) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, userId + SEPARATOR + type);
+        } catch (Exception e) {
+            log.warn("publish notification push failed, user: {}, error: {}", userId, e.getMessage());
+        }
+    }
+
+    private void send(String userId, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // 连接已经断开
+            remove(userId, emitter);
+        }
+    }
+
+    private void remove(String userId, SseEmitter emitter) {
+        emitters.computeIfPresent(userId, (k, userEmitters) -> {
+            if (userEmitters.remove(emitter)) {
+                connections.decrementAndGet();
+            }
+            return userEmitters.isEmpty() ? null : userEmitters;
+        });
+    }
+}
@@ -4,9 +4,14 @@ import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 
+import java.util.List;
+import java.util.Set;
+
 public interface LikeService {
     Boolean checkLikeStatus(Integer targetType, String targetId);
 
+    Set<String> checkLikeStatusBatch(Integer targetType, List<String> targetIds);
+
     Boolean like(Integer targetType, String targetId);
 
     Boolean unlike(Integer targetType, String targetId);
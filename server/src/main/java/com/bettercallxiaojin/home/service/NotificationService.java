@@ -1,6 +1,9 @@
 package com.bettercallxiaojin.home.service;
 
+import com.bettercallxiaojin.home.pojo.VO.CursorPageVO;
+import com.bettercallxiaojin.home.pojo.VO.NotificationSyncVO;
 import com.bettercallxiaojin.home.pojo.VO.NotificationVO;
+import com.bettercallxiaojin.home.pojo.VO.UnreadCountVO;
 
 import java.util.List;
 
@@ -8,7 +11,9 @@ public interface NotificationService {
 
     Boolean read(String id);
 
-    Boolean readBatch(Integer type);
+    Boolean readBatch(Integer type, String readUpTo);
+
+    Integer readByIds(List<String> ids);
 
     Boolean updateLike(String targetId, Integer targetType);
 
@@ -28,7 +33,17 @@ public interface NotificationService {
 
     List<NotificationVO> getCommentNotification();
 
+    CursorPageVO<NotificationVO> getLikeNotificationByCursor(String cursor, Integer pageSize);
+
+    CursorPageVO<NotificationVO> getFollowNotificationByCursor(String cursor, Integer pageSize);
+
+    CursorPageVO<NotificationVO> getCommentNotificationByCursor(String cursor, Integer pageSize);
+
+    NotificationSyncVO getNotificationSince(String watermark);
+
     Integer countUnread(Integer type);
 
     Integer countAllUnread();
+
+    UnreadCountVO countUnreadAll();
 }
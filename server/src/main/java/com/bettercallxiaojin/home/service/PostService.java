@@ -1,5 +1,6 @@
 package com.bettercallxiaojin.home.service;
 
+import com.bettercallxiaojin.home.pojo.VO.CursorPageVO;
 import com.bettercallxiaojin.home.pojo.VO.PostVO;
 import com.bettercallxiaojin.home.pojo.VO.SimplePostVO;
 import com.bettercallxiaojin.home.pojo.entity.Response;
@@ -24,5 +25,15 @@ public interface PostService {
 
     List<SimplePostVO> getFollowPost(Integer pageNum, Integer pageSize);
 
+    List<SimplePostVO> getHotPost(Integer pageNum, Integer pageSize);
+
     List<SimplePostVO> getBatchPost(List<String> postIds);
+
+    CursorPageVO<SimplePostVO> getUserPostByCursor(String userId, String cursor, Integer pageSize);
+
+    CursorPageVO<SimplePostVO> getVisiblePostByCursor(String cursor, Integer pageSize);
+
+    CursorPageVO<SimplePostVO> getFavoritePostByCursor(String cursor, Integer pageSize);
+
+    CursorPageVO<SimplePostVO> getFollowPostByCursor(String cursor, Integer pageSize);
 }
@@ -1,8 +1,15 @@
 package com.bettercallxiaojin.home.service.impl;
 
+import com.bettercallxiaojin.home.cache.AuthorLoader;
+import com.bettercallxiaojin.home.cache.CommentPageCache;
+import com.bettercallxiaojin.home.cache.HotPostRanking;
+import com.bettercallxiaojin.home.cache.PostSummaryCache;
+import com.bettercallxiaojin.home.cache.SharedPageCache;
 import com.bettercallxiaojin.home.common.BaseContext;
 import com.bettercallxiaojin.home.common.Constant.StatusConstant;
 import com.bettercallxiaojin.home.common.Constant.TargetTypeConstant;
+import com.bettercallxiaojin.home.counter.LikeCountAggregator;
+import com.bettercallxiaojin.home.counter.PostCounterShards;
 import com.bettercallxiaojin.home.mapper.CommentMapper;
 import com.bettercallxiaojin.home.mapper.FollowMapper;
 import com.bettercallxiaojin.home.mapper.PostMapper;
@@ -18,6 +25,8 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -27,11 +36,17 @@ public class CommentServiceImpl implements CommentService {
 
     private final PostMapper postMapper;
     private final CommentMapper commentMapper;
-    private final UserService userService;
     private final FollowMapper followMapper;
     private final LikeService likeService;
     private final ReplyService replyService;
 
+    private final PostSummaryCache postSummaryCache;
+    private final AuthorLoader authorLoader;
+    private final LikeCountAggregator likeCountAggregator;
+    private final PostCounterShards postCounterShards;
+    private final CommentPageCache commentPageCache;
+    private final HotPostRanking hotPostRanking;
+
     @Override
     public CommentVO createComment(String postId, String content) {
 
@@ -55,11 +70,14 @@ public class CommentServiceImpl implements CommentService {
         comment.setId(id);
 
         try {
-            postMapper.updateCommentCount(postId, 1);
+            postCounterShards.addCommentCount(postId, 1);
             commentMapper.insert(comment);
         } catch (Exception e) {
             throw new RuntimeException("insert failed: " + e.getMessage());
         }
+        postSummaryCache.evict(postId);
+        hotPostRanking.markDirty(postId);
+        commentPageCache.evict(postId);
 
         CommentVO commentVO = convertToCommentVO(comment);
 
@@ -82,12 +100,15 @@ public class CommentServiceImpl implements CommentService {
         int rows = 0;
         try {
             if (!(status == StatusConstant.OK)) {
-                postMapper.updateCommentCount(comment.getPostId(), -1);
+                postCounterShards.addCommentCount(comment.getPostId(), -1);
             }
             rows = commentMapper.updateStatus(id, status);
         } catch (Exception e) {
             throw new RuntimeException("change status failed: " + e.getMessage());
         }
+        postSummaryCache.evict(comment.getPostId());
+        hotPostRanking.markDirty(comment.getPostId());
+        commentPageCache.evict(comment.getPostId());
         return rows > 0;
     }
 
@@ -96,23 +117,25 @@ public class CommentServiceImpl implements CommentService {
     public List<CommentVO> getCommentsByPostId(String postId, Integer pageNum, Integer pageSize) {
 
         log.info("getCommentsByPostId postId:{} pageNum:{} pageSize:{}", postId, pageNum, pageSize);
-        Post post = postMapper.selectById(postId);
-        if (post == null) {
-            throw new RuntimeException("Post Not Found");
-        }
+        int page = Math.max(pageNum, 1);
+        int size = SharedPageCache.clampPageSize(pageSize);
+
+        // 评论分页对所有浏览者相同，缓存后只叠加点赞和作者标记
+        List<CommentVO> shared = commentPageCache.get(postId, page, size, () -> {
+            Post post = postMapper.selectById(postId);
+            if (post == null) {
+                throw new RuntimeException("Post Not Found");
+            }
 
-        List<Comment> comments = commentMapper.selectByPostId(postId, pageSize, (pageNum - 1) * pageSize);
+            List<Comment> comments = commentMapper.selectByPostId(postId, size, (page - 1) * size);
 
-        if (comments == null || comments.isEmpty()) {
-            return List.of();
-        }
-        List<CommentVO> commentVOS = new ArrayList<>();
-        for  (Comment comment : comments) {
-            CommentVO commentVO = convertToCommentVO(comment);
-            commentVOS.add(commentVO);
-        }
+            if (comments == null || comments.isEmpty()) {
+                return List.of();
+            }
+            return buildCommentVOs(comments);
+        });
 
-        return commentVOS;
+        return overlay(shared);
     }
 
     @Override
@@ -138,6 +161,7 @@ public class CommentServiceImpl implements CommentService {
         } catch (Exception e) {
             throw new RuntimeException("update post failed: " + e.getMessage());
         }
+        commentPageCache.evict(comment.getPostId());
 
         CommentVO commentVO = convertToCommentVO(comment);
 
@@ -146,24 +170,55 @@ public class CommentServiceImpl implements CommentService {
 
 
     private CommentVO convertToCommentVO(Comment comment) {
-        CommentVO commentVO = new CommentVO();
+        return overlay(buildCommentVOs(List.of(comment))).get(0);
+    }
 
-        BeanUtils.copyProperties(comment, commentVO);
-        UserVO userVO = userService.getUserById(comment.getUserId());
+    /**
+     * 构建与浏览者无关的部分，可以缓存共享
+     */
+    private List<CommentVO> buildCommentVOs(List<Comment> comments) {
+        List<String> userIds = new ArrayList<>();
+        for (Comment comment : comments) {
+            userIds.add(comment.getUserId());
+        }
+        Map<String, SimpleUserVO> authors = authorLoader.loadAll(userIds);
 
-        SimpleUserVO simpleUserVO = new SimpleUserVO();
-        simpleUserVO.setId(userVO.getId());
-        simpleUserVO.setUsername(userVO.getUsername());
-        simpleUserVO.setIcon(userVO.getIcon());
-        commentVO.setUserVO(simpleUserVO);
-        commentVO.setIsLike(likeService.checkLikeStatus(TargetTypeConstant.COMMENT, commentVO.getId()));
+        List<CommentVO> commentVOS = new ArrayList<>();
+        for (Comment comment : comments) {
+            CommentVO commentVO = new CommentVO();
 
-        log.info(userVO.getId().toString());
-        log.info(BaseContext.getUserId());
+            BeanUtils.copyProperties(comment, commentVO);
+            commentVO.setUserVO(authors.get(comment.getUserId()));
 
-        commentVO.setIsCreator(userVO.getId().equals(BaseContext.getUserId()));
+            commentVOS.add(commentVO);
+        }
+        return commentVOS;
+    }
+
+    /**
+     * 复制共享结果并叠加当前浏览者的点赞状态（一次批量查询）和作者标记
+     */
+    private List<CommentVO> overlay(List<CommentVO> shared) {
+        if (shared.isEmpty()) {
+            return List.of();
+        }
 
+        List<String> ids = new ArrayList<>();
+        for (CommentVO commentVO : shared) {
+            ids.add(commentVO.getId());
+        }
+        Set<String> liked = likeService.checkLikeStatusBatch(TargetTypeConstant.COMMENT, ids);
 
-        return commentVO;
+        String currentUserId = BaseContext.getUserId();
+        List<CommentVO> commentVOS = new ArrayList<>();
+        for (CommentVO sharedVO : shared) {
+            CommentVO commentVO = new CommentVO();
+            BeanUtils.copyProperties(sharedVO, commentVO);
+            commentVO.setIsLike(liked.contains(commentVO.getId()));
+            commentVO.setLikeCount(likeCountAggregator.withPending(TargetTypeConstant.COMMENT, commentVO.getId(), sharedVO.getLikeCount()));
+            commentVO.setIsCreator(commentVO.getUserVO() != null && commentVO.getUserVO().getId().equals(currentUserId));
+            commentVOS.add(commentVO);
+        }
+        return commentVOS;
     }
 }
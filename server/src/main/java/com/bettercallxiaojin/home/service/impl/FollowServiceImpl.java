@@ -1,5 +1,6 @@
 package com.bettercallxiaojin.home.service.impl;
 
+import com.bettercallxiaojin.home.cache.FollowInboxFanout;
 import com.bettercallxiaojin.home.common.BaseContext;
 import com.bettercallxiaojin.home.common.util.PageQueryUtil;
 import com.bettercallxiaojin.home.mapper.FollowMapper;
@@ -21,6 +22,7 @@ public class FollowServiceImpl implements FollowService {
 
     private final UserMapper userMapper;
     private final FollowMapper followMapper;
+    private final FollowInboxFanout followInboxFanout;
 
     @Override
     public void follow(String followId) {
@@ -56,6 +58,7 @@ public class FollowServiceImpl implements FollowService {
         } catch (Exception e) {
             throw new RuntimeException("follow error: " + e.getMessage());
         }
+        followInboxFanout.onFollow(userId, followId);
 
     }
 
@@ -87,6 +90,7 @@ public class FollowServiceImpl implements FollowService {
         } catch (Exception e) {
             throw new RuntimeException("follow error: " + e.getMessage());
         }
+        followInboxFanout.onUnfollow(userId, followId);
     }
 
     @Override
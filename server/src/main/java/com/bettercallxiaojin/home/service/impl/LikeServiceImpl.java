@@ -1,87 +1,165 @@
 package com.bettercallxiaojin.home.service.impl;
 
+import com.bettercallxiaojin.home.cache.HotPostRanking;
+import com.bettercallxiaojin.home.cache.LikeToggleDebouncer;
+import com.bettercallxiaojin.home.cache.UserLikeSetCache;
 import com.bettercallxiaojin.home.common.BaseContext;
+import com.bettercallxiaojin.home.common.Constant.TargetTypeConstant;
+import com.bettercallxiaojin.home.counter.LikeCountAggregator;
 import com.bettercallxiaojin.home.mapper.*;
-import com.bettercallxiaojin.home.pojo.entity.Post;
 import com.bettercallxiaojin.home.service.LikeService;
+import com.bettercallxiaojin.home.service.NotificationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class LikeServiceImpl implements LikeService {
 
     private final LikeMapper likeMapper;
-    private final PostMapper postMapper;
-    private final CommentMapper commentMapper;
-    private final ReplyMapper replyMapper;
-    private final UserMapper userMapper;
+
+    private final LikeCountAggregator likeCountAggregator;
+    private final UserLikeSetCache userLikeSetCache;
+    private final HotPostRanking hotPostRanking;
+    private final LikeToggleDebouncer likeToggleDebouncer;
+    private final NotificationService notificationService;
 
     @Override
     public Boolean like(Integer targetType, String targetId) {
+        return toggle(targetType, targetId, true);
+    }
+
+    @Override
+    public Boolean unlike(Integer targetType, String targetId) {
+        return toggle(targetType, targetId, false);
+    }
+
+    /**
+     * 只记录期望的状态，合并窗口结束后按最终状态落库并发送通知
+     *
+     * @return 状态是否发生变化
+     */
+    private Boolean toggle(Integer targetType, String targetId, boolean liked) {
         String userId = BaseContext.getUserId();
 
-        if (checkLikeStatus(targetType, targetId)) {
-            throw new RuntimeException("already liked");
+        // 已经是期望的状态（包括窗口内尚未落库的状态）
+        if (checkLikeStatus(targetType, targetId) == liked) {
+            return false;
         }
 
+        likeToggleDebouncer.submit(userId, targetType, targetId, liked,
+                finalLiked -> persist(userId, targetType, targetId, finalLiked));
+        return true;
+    }
+
+    /**
+     * 在调度线程中执行，需要自己设置 BaseContext；最终状态与数据库一致时什么都不做
+     */
+    private void persist(String userId, Integer targetType, String targetId, boolean liked) {
+        BaseContext.setUserId(userId);
         try {
-            if (targetType == 1) {
-                String postUserId = postMapper.selectUserId(targetId);
-                userMapper.updateLikeCount(1, postUserId);
-                postMapper.updateLikeCount(targetId, 1);
-            } else if (targetType == 2) {
-                commentMapper.updateLikeCount(targetId, 1);
-            } else if (targetType == 3) {
-                replyMapper.updateLikeCount(targetId, 1);
+            if (liked && persistLike(userId, targetType, targetId)) {
+                notificationService.updateLike(targetId, targetType);
+            } else if (!liked && persistUnlike(userId, targetType, targetId)) {
+                notificationService.deleteLike(targetId, targetType);
             }
-        } catch (Exception e){
-            throw new RuntimeException("update like count error" + e.getMessage());
+        } finally {
+            BaseContext.remove();
         }
+    }
 
+    private boolean persistLike(String userId, Integer targetType, String targetId) {
         int rows = 0;
         try {
             rows = likeMapper.insert(userId, targetId, targetType);
         } catch (Exception e) {
             throw new RuntimeException("like error: " + e.getMessage());
         }
-        return rows > 0;
+        // 已经点过赞，计数不变
+        if (rows == 0) {
+            return false;
+        }
+
+        try {
+            userLikeSetCache.add(userId, targetType, targetId);
+        } catch (Exception e) {
+            log.warn("update like set failed: {}", e.getMessage());
+        }
+
+        // 点赞数（包括帖子作者的获赞数）由聚合器合并后批量落库
+        likeCountAggregator.add(targetType, targetId, 1);
+        if (targetType == TargetTypeConstant.POST) {
+            hotPostRanking.markDirty(targetId);
+        }
+        return true;
+    }
+
+    private boolean persistUnlike(String userId, Integer targetType, String targetId) {
+        int rows = 0;
+        try {
+            rows = likeMapper.delete(userId, targetId, targetType);
+        } catch (Exception e) {
+            throw new RuntimeException("like error: " + e.getMessage());
+        }
+        // 本来就没有点赞，计数不变
+        if (rows == 0) {
+            return false;
+        }
+
+        try {
+            userLikeSetCache.remove(userId, targetType, targetId);
+        } catch (Exception e) {
+            log.warn("update like set failed: {}", e.getMessage());
+        }
+
+        likeCountAggregator.add(targetType, targetId, -1);
+        if (targetType == TargetTypeConstant.POST) {
+            hotPostRanking.markDirty(targetId);
+        }
+        return true;
     }
 
     @Override
-    public Boolean unlike(Integer targetType, String targetId) {
+    public Set<String> checkLikeStatusBatch(Integer targetType, List<String> targetIds) {
         String userId = BaseContext.getUserId();
 
-        if (!checkLikeStatus(targetType, targetId)) {
-            throw new RuntimeException("not liked");
+        if (userId == null || userId.isEmpty() || targetIds == null || targetIds.isEmpty()) {
+            return Set.of();
         }
 
-        try {
-            if (targetType == 1) {
-                String postUserId = postMapper.selectUserId(targetId);
-                userMapper.updateLikeCount(-1, postUserId);
-                postMapper.updateLikeCount(targetId, -1);
-            } else if (targetType == 2) {
-                commentMapper.updateLikeCount(targetId, -1);
-            } else if (targetType == 3) {
-                replyMapper.updateLikeCount(targetId, -1);
+        // 合并窗口内的切换以最终状态为准
+        Set<String> liked = new HashSet<>(selectLiked(userId, targetType, targetIds));
+        for (String targetId : targetIds) {
+            Boolean pending = likeToggleDebouncer.pending(userId, targetType, targetId);
+            if (Boolean.TRUE.equals(pending)) {
+                liked.add(targetId);
+            } else if (Boolean.FALSE.equals(pending)) {
+                liked.remove(targetId);
             }
-        } catch (Exception e){
-            throw new RuntimeException("update like count error" + e.getMessage());
+        }
+        return liked;
+    }
+
+    private Set<String> selectLiked(String userId, Integer targetType, List<String> targetIds) {
+        try {
+            return userLikeSetCache.likedAmong(userId, targetType, targetIds);
+        } catch (Exception e) {
+            log.warn("read like set failed, fallback to db: {}", e.getMessage());
         }
 
-        int rows = 0;
         try {
-            rows = likeMapper.delete(userId, targetId, targetType);
+            return new HashSet<>(likeMapper.selectLikedTargetIds(userId, targetType, targetIds));
         } catch (Exception e) {
             throw new RuntimeException("like error: " + e.getMessage());
         }
-        return rows > 0;
     }
 
-
     @Override
     public Boolean checkLikeStatus(Integer targetType, String targetId) {
         String userId = BaseContext.getUserId();
@@ -90,6 +168,17 @@ public class LikeServiceImpl implements LikeService {
             return false;
         }
 
+        Boolean pending = likeToggleDebouncer.pending(userId, targetType, targetId);
+        if (pending != null) {
+            return pending;
+        }
+
+        try {
+            return userLikeSetCache.likedAmong(userId, targetType, List.of(targetId)).contains(targetId);
+        } catch (Exception e) {
+            log.warn("read like set failed, fallback to db: {}", e.getMessage());
+        }
+
         try {
             return (likeMapper.selectLikeRecord(userId, targetId, targetType)>0);
         } catch (Exception e) {
@@ -1,302 +1,311 @@
 package com.bettercallxiaojin.home.service.impl;
 
+import com.bettercallxiaojin.home.cache.AuthorLoader;
+import com.bettercallxiaojin.home.cache.UnreadCounterCache;
 import com.bettercallxiaojin.home.common.BaseContext;
 import com.bettercallxiaojin.home.common.Constant.NotificationConstant;
 import com.bettercallxiaojin.home.common.Constant.TargetTypeConstant;
+import com.bettercallxiaojin.home.common.util.CursorUtil;
+import com.bettercallxiaojin.home.counter.NotificationWriter;
+import com.bettercallxiaojin.home.job.NotificationArchiveJob;
 import com.bettercallxiaojin.home.mapper.*;
+import com.bettercallxiaojin.home.pojo.VO.CursorPageVO;
+import com.bettercallxiaojin.home.pojo.VO.NotificationSyncVO;
 import com.bettercallxiaojin.home.pojo.VO.NotificationVO;
 import com.bettercallxiaojin.home.pojo.VO.SimpleUserVO;
-import com.bettercallxiaojin.home.pojo.entity.Comment;
+import com.bettercallxiaojin.home.pojo.VO.UnreadCountVO;
 import com.bettercallxiaojin.home.pojo.entity.Notification;
-import com.bettercallxiaojin.home.pojo.entity.Post;
-import com.bettercallxiaojin.home.pojo.entity.Reply;
+import com.bettercallxiaojin.home.push.NotificationPushHub;
 import com.bettercallxiaojin.home.service.NotificationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class NotificationServiceImpl implements NotificationService {
 
-    private final PostMapper postMapper;
-    private final CommentMapper commentMapper;
-    private final ReplyMapper replyMapper;
+    private static final List<Integer> LIKE_TYPES = List.of(NotificationConstant.LIKE);
+    private static final List<Integer> FOLLOW_TYPES = List.of(NotificationConstant.FOLLOW);
+    private static final List<Integer> COMMENT_TYPES = List.of(NotificationConstant.COMMENT, NotificationConstant.REPLY);
+    // 不传游标的旧接口只返回最新的这么多条
+    private static final int LIST_LIMIT = 100;
+    // 游标分页每页最多条数，客户端传入的 pageSize 超出时截断
+    private static final int MAX_PAGE_SIZE = 100;
+    // updated_at 取的是事务开始时间，提交晚于水位的行可能早于水位，水位往前多取一段，客户端按 id 去重
+    private static final Duration SYNC_SKEW = Duration.ofSeconds(30);
+    // 增量超过这么多条时让客户端重新拉取
+    private static final int SYNC_LIMIT = 200;
+
     private final NotificationMapper notificationMapper;
-    private final UserMapper userMapper;
+    private final AuthorLoader authorLoader;
+    private final UnreadCounterCache unreadCounterCache;
+    private final NotificationPushHub notificationPushHub;
+    private final NotificationWriter notificationWriter;
+    private final NotificationArchiveJob notificationArchiveJob;
 
 
     @Override
     public Integer countUnread(Integer type) {
         String userId = BaseContext.getUserId();
-        return notificationMapper.countUnreadByType(userId, type);
+        return unreadCounterCache.getAll(userId).getOrDefault(type, 0);
     }
 
     @Override
     public Integer countAllUnread() {
         String userId = BaseContext.getUserId();
-        return notificationMapper.countAllUnread(userId);
+        int total = 0;
+        for (Integer count : unreadCounterCache.getAll(userId).values()) {
+            total += count;
+        }
+        return total;
     }
 
     @Override
-    public Boolean read(String id) {
-        return notificationMapper.updateRead(id) > 0;
+    public UnreadCountVO countUnreadAll() {
+        return unreadCounterCache.getBadges(BaseContext.getUserId());
     }
 
     @Override
-    public Boolean readBatch(Integer type) {
-        return notificationMapper.updateReadBatch(BaseContext.getUserId(), type) > 0;
+    public Boolean read(String id) {
+        Notification notification = notificationMapper.updateRead(id);
+        if (notification == null) {
+            return false;
+        }
+        unreadCounterCache.increment(notification.getUserId(), notification.getType(), -1);
+        notificationPushHub.notifyBadge(notification.getUserId());
+        return true;
     }
 
+    /**
+     * 只前移已读水位，不逐行更新；readUpTo 为空时取当前时间
+     */
     @Override
-    public Boolean updateLike(String targetId, Integer targetType) {
-
-        log.info("updateLike");
-
-        Notification notification = new Notification();
-        String currentUserId = BaseContext.getUserId();
-
-        if (targetType.equals(TargetTypeConstant.POST)) {
-            Post post = postMapper.selectById(targetId);
-
-            // 自己给自己的帖子点赞，不通知
-            if (post.getUserId().equals(currentUserId)) return false;
-
-            notification.setUserId(post.getUserId());
-            notification.setTargetContent(post.getTitle());
-            notification.setPostId(post.getId());
-        } else if (targetType.equals(TargetTypeConstant.COMMENT)) {
-            Comment comment = commentMapper.selectById(targetId);
-
-
-            // 自己给自己的评论点赞，不通知
-            if (comment.getUserId().equals(currentUserId)) return false;
-
-            notification.setUserId(comment.getUserId());
-            notification.setTargetContent(comment.getContent());
-            notification.setPostId(comment.getPostId());
-        } else if (targetType.equals(TargetTypeConstant.REPLY)) {
-            Reply reply = replyMapper.selectById(targetId);
-            // 自己给自己的回复点赞，不通知
-            if (reply.getUserId().equals(currentUserId)) return false;
-
-            notification.setUserId(reply.getUserId());
-            notification.setTargetContent(reply.getContent());
+    public Boolean readBatch(Integer type, String readUpTo) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime upTo;
+        try {
+            upTo = readUpTo == null || readUpTo.isEmpty() ? now : LocalDateTime.parse(readUpTo);
+        } catch (DateTimeParseException e) {
+            throw new RuntimeException("invalid readUpTo");
+        }
+        // 水位不能超过当前时间，否则水位停在未来，之后的全部已读都无法再前移
+        if (upTo.isAfter(now)) {
+            upTo = now;
+        }
 
-            Comment comment = commentMapper.selectById(reply.getCommentId());
+        String userId = BaseContext.getUserId();
+        int rows = notificationMapper.upsertReadMark(userId, type, upTo);
+        // 水位之后可能还有未读，直接删除让下次读取重建
+        unreadCounterCache.evict(userId);
+        notificationPushHub.notifyBadge(userId);
+        return rows > 0;
+    }
 
-            notification.setPostId(comment.getPostId());
-        } else {
-            throw new RuntimeException("targetType error");
+    @Override
+    public Integer readByIds(List<String> ids) {
+        String userId = BaseContext.getUserId();
+        List<Notification> notifications = notificationMapper.updateReadByIds(userId, ids);
+        if (notifications.isEmpty()) {
+            return 0;
         }
 
-        notification.setId(UUID.randomUUID().toString());
-        notification.setRead(false);
-        notification.setType(NotificationConstant.LIKE);
-        notification.setCreatedAt(LocalDateTime.now());
-        notification.setTargetUserId(currentUserId);
-        notification.setTargetId(targetId);
-        notification.setTargetType(targetType);
+        Map<Integer, Integer> deltas = new HashMap<>();
+        for (Notification notification : notifications) {
+            deltas.merge(notification.getType(), -1, Integer::sum);
+        }
+        unreadCounterCache.increment(userId, deltas);
+        notificationPushHub.notifyBadge(userId);
+        return notifications.size();
+    }
 
-        int rows = 0;
-        try {
-            rows = notificationMapper.insert(notification);
-        } catch (Exception e) {
-            throw new RuntimeException("like error: " + e.getMessage());
+    @Override
+    public Boolean updateLike(String targetId, Integer targetType) {
+        if (!targetType.equals(TargetTypeConstant.POST) && !targetType.equals(TargetTypeConstant.COMMENT)
+                && !targetType.equals(TargetTypeConstant.REPLY)) {
+            throw new RuntimeException("targetType error");
         }
-        return rows > 0;
+        notificationWriter.submit(NotificationWriter.Kind.LIKE, BaseContext.getUserId(), targetId, targetType, null);
+        return true;
     }
 
 
     @Override
     public Boolean updateComment(String content, String targetId) {
-        String currentUserId = BaseContext.getUserId();
-        Post post = postMapper.selectById(targetId);
-
-        // 自己评论自己的帖子，不通知
-        if (post.getUserId().equals(currentUserId)) return false;
-
-        Notification notification = new Notification();
-        notification.setId(UUID.randomUUID().toString());
-        notification.setRead(false);
-        notification.setType(NotificationConstant.COMMENT);
-        notification.setCreatedAt(LocalDateTime.now());
-        notification.setTargetUserId(currentUserId);
-        notification.setTargetId(targetId);
-        notification.setTargetType(TargetTypeConstant.POST);
-        notification.setUserId(post.getUserId());
-        notification.setTargetContent(post.getTitle());
-        notification.setContent(content);
-        notification.setPostId(post.getId());
-
-        int rows = 0;
-        try {
-            rows = notificationMapper.insert(notification);
-        } catch (Exception e) {
-            throw new RuntimeException("comment error: " + e.getMessage());
-        }
-        return rows > 0;
+        notificationWriter.submit(NotificationWriter.Kind.COMMENT, BaseContext.getUserId(), targetId, TargetTypeConstant.POST, content);
+        return true;
     }
 
 
     @Override
     public Boolean updateReply(String content, String targetId, Integer targetType) {
-        Notification notification = new Notification();
-
-        notification.setId(UUID.randomUUID().toString());
-        notification.setRead(false);
-        notification.setType(NotificationConstant.REPLY);
-        notification.setCreatedAt(LocalDateTime.now());
-        notification.setTargetUserId(BaseContext.getUserId());
-        notification.setTargetId(targetId);
-        notification.setTargetType(targetType);
-        notification.setContent(content);
-
-        if (targetType.equals(TargetTypeConstant.COMMENT)) {
-            Comment comment = commentMapper.selectById(targetId);
-            notification.setUserId(comment.getUserId());
-            notification.setTargetContent(comment.getContent());
-            notification.setPostId(comment.getPostId());
-        } else if (targetType.equals(TargetTypeConstant.REPLY)) {
-            Reply reply = replyMapper.selectById(targetId);
-            notification.setUserId(reply.getUserId());
-            notification.setTargetContent(reply.getContent());
-            Comment comment = commentMapper.selectById(reply.getCommentId());
-
-            notification.setPostId(comment.getPostId());
-        } else {
+        if (!targetType.equals(TargetTypeConstant.COMMENT) && !targetType.equals(TargetTypeConstant.REPLY)) {
             throw new RuntimeException("targetType error");
         }
-
-        int rows = 0;
-        try {
-            rows = notificationMapper.insert(notification);
-        } catch (Exception e) {
-            throw new RuntimeException("like error: " + e.getMessage());
-        }
-        return rows > 0;
+        notificationWriter.submit(NotificationWriter.Kind.REPLY, BaseContext.getUserId(), targetId, targetType, content);
+        return true;
     }
 
     @Override
     public Boolean updateFollow(String userId) {
-
-        Notification notification = new Notification();
-
-        notification.setId(UUID.randomUUID().toString());
-        notification.setUserId(userId);
-        notification.setRead(false);
-        notification.setType(NotificationConstant.FOLLOW);
-        notification.setCreatedAt(LocalDateTime.now());
-        notification.setTargetUserId(BaseContext.getUserId());
-
-
-        int rows = 0;
-        try {
-            rows = notificationMapper.insert(notification);
-        } catch (Exception e) {
-            throw new RuntimeException("like error: " + e.getMessage());
-        }
-        return rows > 0;
+        notificationWriter.submit(NotificationWriter.Kind.FOLLOW, BaseContext.getUserId(), userId, null, null);
+        return true;
     }
 
     @Override
     public Boolean deleteLike(String targetId, Integer targetType) {
-        int rows = 0;
-        try {
-            rows = notificationMapper.deleteLike(
-                    BaseContext.getUserId(),
-                    targetId,
-                    targetType,
-                    NotificationConstant.LIKE
-            );
-        } catch (Exception e) {
-            throw new RuntimeException("delete like error: " + e.getMessage());
-        }
-        return rows > 0;
+        notificationWriter.submit(NotificationWriter.Kind.DELETE_LIKE, BaseContext.getUserId(), targetId, targetType, null);
+        return true;
     }
 
     @Override
     public Boolean deleteFollow(String userId) {
-        int rows = 0;
-        try {
-            rows = notificationMapper.deleteFollow(
-                    BaseContext.getUserId(),
-                    userId,
-                    NotificationConstant.FOLLOW
-            );
-        } catch (Exception e) {
-            throw new RuntimeException("delete follow error: " + e.getMessage());
-        }
-        return rows > 0;
+        notificationWriter.submit(NotificationWriter.Kind.DELETE_FOLLOW, BaseContext.getUserId(), userId, null, null);
+        return true;
     }
 
     @Override
     public List<NotificationVO> getLikeNotification() {
-        List<Notification> notifications = notificationMapper.selectByUserAndType(
-                BaseContext.getUserId(),
-                NotificationConstant.LIKE
-        );
-        if (notifications.isEmpty()) {
-            return List.of();
-        }
-        return convertToNotificationVOList(notifications);
+        return getNotificationPage(LIKE_TYPES, null, LIST_LIMIT).getList();
     }
 
     @Override
     public List<NotificationVO> getFollowNotification() {
-        List<Notification> notifications = notificationMapper.selectByUserAndType(
-                BaseContext.getUserId(),
-                NotificationConstant.FOLLOW
-        );
-        if (notifications.isEmpty()) {
-            return List.of();
-        }
-        return convertToNotificationVOList(notifications);
+        return getNotificationPage(FOLLOW_TYPES, null, LIST_LIMIT).getList();
     }
 
     @Override
     public List<NotificationVO> getCommentNotification() {
-        List<Notification> comments = notificationMapper.selectByUserAndType(
-                BaseContext.getUserId(),
-                NotificationConstant.COMMENT
-        );
-        List<Notification> replies = notificationMapper.selectByUserAndType(
-                BaseContext.getUserId(),
-                NotificationConstant.REPLY
-        );
-
-        List<Notification> notifications = new ArrayList<>();
-        if (comments != null) notifications.addAll(comments);
-        if (replies != null) notifications.addAll(replies);
+        return getNotificationPage(COMMENT_TYPES, null, LIST_LIMIT).getList();
+    }
 
-        if (notifications.isEmpty()) {
-            return List.of();
+    @Override
+    public CursorPageVO<NotificationVO> getLikeNotificationByCursor(String cursor, Integer pageSize) {
+        return getNotificationPage(LIKE_TYPES, cursor, pageSize);
+    }
+
+    @Override
+    public CursorPageVO<NotificationVO> getFollowNotificationByCursor(String cursor, Integer pageSize) {
+        return getNotificationPage(FOLLOW_TYPES, cursor, pageSize);
+    }
+
+    @Override
+    public CursorPageVO<NotificationVO> getCommentNotificationByCursor(String cursor, Integer pageSize) {
+        return getNotificationPage(COMMENT_TYPES, cursor, pageSize);
+    }
+
+    @Override
+    public NotificationSyncVO getNotificationSince(String watermark) {
+        LocalDateTime since;
+        try {
+            since = LocalDateTime.parse(watermark);
+        } catch (DateTimeParseException e) {
+            throw new RuntimeException("invalid watermark");
+        }
+
+        String userId = BaseContext.getUserId();
+        // 水位用数据库时间，和 updated_at、deleted_at 比较不受应用服务器时钟和异步写入延迟影响
+        LocalDateTime now = notificationMapper.selectNow();
+        if (since.isBefore(now.minusDays(NotificationConstant.TOMBSTONE_RETENTION_DAYS))) {
+            return new NotificationSyncVO(List.of(), List.of(), now, true);
         }
 
-        notifications.sort((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()));
+        since = since.minus(SYNC_SKEW);
+        // 多取一条用来判断是否超出上限
+        List<Notification> notifications = notificationMapper.selectSince(userId, since, SYNC_LIMIT + 1);
+        if (notifications.size() > SYNC_LIMIT) {
+            return new NotificationSyncVO(List.of(), List.of(), now, true);
+        }
+        List<String> deletedIds = notificationMapper.selectDeletedIdsSince(userId, since);
 
-        return convertToNotificationVOList(notifications);
+        List<NotificationVO> notificationVOs = notifications.isEmpty() ? List.of() : convertToNotificationVOList(notifications);
+        return new NotificationSyncVO(notificationVOs, deletedIds, now, false);
     }
 
+    /**
+     * 评论和回复在 SQL 里合并排序，每页的目标用户一次批量加载
+     * 热表不满一页或者已经翻到归档截止时间之前时，同样的游标再查一次归档表，两边合并后取一页
+     */
+    private CursorPageVO<NotificationVO> getNotificationPage(List<Integer> types, String cursor, Integer pageSize) {
+        int size = Math.min(Math.max(pageSize, 1), MAX_PAGE_SIZE);
+        String userId = BaseContext.getUserId();
+        String[] position = CursorUtil.decode(cursor);
+        LocalDateTime createdAt = position == null ? null : parseTime(position[0]);
+        String id = position == null ? null : position[1];
+        List<Notification> notifications = notificationMapper.selectByUserAndTypes(userId, types, createdAt, id, size);
+
+        if (notifications.size() < size
+                || notifications.get(notifications.size() - 1).getCreatedAt().isBefore(notificationArchiveJob.archivedBefore())) {
+            List<Notification> archived = notificationMapper.selectArchivedByUserAndTypes(userId, types, createdAt, id, size);
+            if (!archived.isEmpty()) {
+                List<Notification> merged = new ArrayList<>(notifications);
+                merged.addAll(archived);
+                merged.sort(Comparator.comparing(Notification::getCreatedAt).thenComparing(Notification::getId).reversed());
+                notifications = merged.subList(0, Math.min(merged.size(), size));
+            }
+        }
+
+        if (notifications.isEmpty()) {
+            return new CursorPageVO<>(List.of(), null);
+        }
+
+        // 不满一页说明已经到底
+        String nextCursor = null;
+        if (notifications.size() == size) {
+            Notification last = notifications.get(notifications.size() - 1);
+            nextCursor = CursorUtil.encode(last.getCreatedAt(), last.getId());
+        }
+        return new CursorPageVO<>(convertToNotificationVOList(notifications), nextCursor);
+    }
 
+    private LocalDateTime parseTime(String value) {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new RuntimeException("invalid cursor");
+        }
+    }
 
     private List<NotificationVO> convertToNotificationVOList(List<Notification> list) {
+        // 聚合通知的最近触发用户和 targetUser 一起批量加载
+        Set<String> userIds = new HashSet<>();
+        for (Notification notification : list) {
+            userIds.add(notification.getTargetUserId());
+            userIds.addAll(actorIds(notification));
+        }
+        Map<String, SimpleUserVO> users = authorLoader.loadAll(userIds);
+
         return list.stream().map(notification -> {
             NotificationVO vo = new NotificationVO();
 
             BeanUtils.copyProperties(notification, vo);
 
-            SimpleUserVO user = userMapper.getSimpleUserVO(notification.getTargetUserId());
-            vo.setTargetUser(user);
+            vo.setTargetUser(users.get(notification.getTargetUserId()));
+            vo.setActorCount(notification.getActorCount() == null ? 1 : notification.getActorCount());
+            vo.setActorUsers(actorIds(notification).stream().map(users::get).filter(Objects::nonNull).toList());
 
             return vo;
         }).toList();
     }
+
+    private List<String> actorIds(Notification notification) {
+        if (notification.getActorIds() == null || notification.getActorIds().isEmpty()) {
+            return List.of(notification.getTargetUserId());
+        }
+        return List.of(notification.getActorIds().split(","));
+    }
 }
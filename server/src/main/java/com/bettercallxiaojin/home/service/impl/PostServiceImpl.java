@@ -1,23 +1,38 @@
 package com.bettercallxiaojin.home.service.impl;
 
+import com.bettercallxiaojin.home.cache.AuthorLoader;
+import com.bettercallxiaojin.home.cache.AuthorRecentPostCache;
+import com.bettercallxiaojin.home.cache.CommentPageCache;
+import com.bettercallxiaojin.home.cache.FollowInboxCache;
+import com.bettercallxiaojin.home.cache.FollowInboxFanout;
+import com.bettercallxiaojin.home.cache.HotPostRanking;
+import com.bettercallxiaojin.home.cache.LatestTimelineCache;
+import com.bettercallxiaojin.home.cache.PostDetailCache;
+import com.bettercallxiaojin.home.cache.PostSummaryCache;
 import com.bettercallxiaojin.home.common.BaseContext;
 import com.bettercallxiaojin.home.common.Constant.TargetTypeConstant;
+import com.bettercallxiaojin.home.common.util.CursorUtil;
+import com.bettercallxiaojin.home.counter.LikeCountAggregator;
+import com.bettercallxiaojin.home.counter.PostCounterShards;
 import com.bettercallxiaojin.home.mapper.FollowMapper;
 import com.bettercallxiaojin.home.mapper.PostMapper;
+import com.bettercallxiaojin.home.pojo.VO.CursorPageVO;
 import com.bettercallxiaojin.home.pojo.VO.PostVO;
 import com.bettercallxiaojin.home.pojo.VO.SimplePostVO;
 import com.bettercallxiaojin.home.pojo.VO.SimpleUserVO;
-import com.bettercallxiaojin.home.pojo.VO.UserVO;
 import com.bettercallxiaojin.home.pojo.entity.Post;
 import com.bettercallxiaojin.home.service.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
@@ -25,12 +40,31 @@ import java.util.UUID;
 @Slf4j
 public class PostServiceImpl implements PostService {
 
+    private static final String MERGE_STRATEGY = "merge";
+    // 游标分页每页最多条数，客户端传入的 pageSize 超出时截断
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final PostMapper postMapper;
     private final FollowMapper followMapper;
 
-    private final UserService userService;
     private final LikeService likeService;
 
+    private final LatestTimelineCache latestTimelineCache;
+    private final PostSummaryCache postSummaryCache;
+    private final FollowInboxCache followInboxCache;
+    private final FollowInboxFanout followInboxFanout;
+    private final AuthorRecentPostCache authorRecentPostCache;
+    private final HotPostRanking hotPostRanking;
+    private final AuthorLoader authorLoader;
+    private final PostDetailCache postDetailCache;
+    private final CommentPageCache commentPageCache;
+    private final LikeCountAggregator likeCountAggregator;
+    private final PostCounterShards postCounterShards;
+
+    // 关注流读取策略：inbox 为写时扇出的收件箱，merge 为读时对作者最近帖子做多路归并
+    @Value("${bettercallxiaojin.feed.follow-strategy:inbox}")
+    private String followStrategy;
+
     @Override
     public PostVO createPost(String title, String preview, String content) {
         String userId = BaseContext.getUserId();
@@ -53,6 +87,18 @@ public class PostServiceImpl implements PostService {
             throw new RuntimeException("insert failed: " + e.getMessage());
         }
 
+        try {
+            latestTimelineCache.add(post);
+        } catch (Exception e) {
+            log.warn("add post to latest timeline failed: {}", e.getMessage());
+        }
+        // merge 策略下不再维护收件箱，避免大V发帖时的写放大
+        if (!MERGE_STRATEGY.equals(followStrategy)) {
+            followInboxFanout.onPostCreated(post);
+        }
+        authorRecentPostCache.add(post);
+        hotPostRanking.markDirty(id);
+
         PostVO postVO = convertToPostVO(post);
 
         return postVO;
@@ -88,6 +134,8 @@ public class PostServiceImpl implements PostService {
         } catch (Exception e) {
             throw new RuntimeException("update post failed: " + e.getMessage());
         }
+        postSummaryCache.evict(id);
+        postDetailCache.evict(id);
 
         PostVO postVO = convertToPostVO(post);
 
@@ -112,13 +160,35 @@ public class PostServiceImpl implements PostService {
         } catch (Exception e) {
             throw new RuntimeException("delete post failed: " + e.getMessage());
         }
+        try {
+            latestTimelineCache.remove(id);
+        } catch (Exception e) {
+            log.warn("remove post from latest timeline failed: {}", e.getMessage());
+        }
+        postSummaryCache.evict(id);
+        postDetailCache.evict(id);
+        commentPageCache.evict(id);
+        if (!MERGE_STRATEGY.equals(followStrategy)) {
+            followInboxFanout.onPostDeleted(post);
+        }
+        authorRecentPostCache.evict(post.getUserId());
+        hotPostRanking.remove(id);
         return rows > 0;
     }
 
     @Override
     public PostVO getPostById(String id) {
-        Post post = postMapper.selectById(id);
-        PostVO postVO = convertToPostVO(post);
+        PostVO shared = postDetailCache.get(id, this::loadSharedPostVO);
+        if (shared == null) {
+            throw new RuntimeException("post not found, id: " + id);
+        }
+
+        // 缓存中的对象是共享的，复制后再叠加当前浏览者相关的字段
+        PostVO postVO = new PostVO();
+        BeanUtils.copyProperties(shared, postVO);
+        postVO.setIsLike(likeService.checkLikeStatus(TargetTypeConstant.POST, id));
+        postVO.setIsCreator(shared.getUserVO() != null && shared.getUserVO().getId().equals(BaseContext.getUserId()));
+        applyLiveCounts(postVO);
 
         return postVO;
     }
@@ -130,28 +200,33 @@ public class PostServiceImpl implements PostService {
         if (posts == null || posts.isEmpty()) {
             return List.of();
         }
-        List<SimplePostVO> simplePostVOs = new ArrayList<>();
-        for  (Post post : posts) {
-            SimplePostVO simplePostVO = convertToSimplePostVO(post);
-            simplePostVOs.add(simplePostVO);
-        }
-
-        return simplePostVOs;
+        return convertToSimplePostVOs(posts);
     }
 
     @Override
     public List<SimplePostVO> getVisiblePost(Integer pageNum, Integer pageSize) {
-        List<Post> posts = postMapper.selectLatest( pageSize, (pageNum - 1) * pageSize);
+        int offset = (pageNum - 1) * pageSize;
+
+        // 缓存范围内的页直接读 Redis 时间线，不访问数据库
+        if (LatestTimelineCache.covers(offset, pageSize)) {
+            try {
+                List<String> postIds = latestTimelineCache.range(offset, pageSize);
+                if (postIds == null && latestTimelineCache.tryRebuild(() -> postMapper.selectLatestIds(LatestTimelineCache.CAPACITY))) {
+                    postIds = latestTimelineCache.range(offset, pageSize);
+                }
+                if (postIds != null) {
+                    return getSummaries(postIds);
+                }
+            } catch (Exception e) {
+                log.warn("read latest timeline failed, fallback to database: {}", e.getMessage());
+            }
+        }
+
+        List<Post> posts = postMapper.selectLatest(pageSize, offset);
         if (posts == null || posts.isEmpty()) {
             return List.of();
         }
-        List<SimplePostVO> simplePostVOs = new ArrayList<>();
-        for  (Post post : posts) {
-            SimplePostVO simplePostVO = convertToSimplePostVO(post);
-            simplePostVOs.add(simplePostVO);
-        }
-
-        return simplePostVOs;
+        return convertToSimplePostVOs(posts);
     }
 
     @Override
@@ -160,36 +235,76 @@ public class PostServiceImpl implements PostService {
         if (posts == null || posts.isEmpty()) {
             return List.of();
         }
-        List<SimplePostVO> simplePostVOs = new ArrayList<>();
-        for  (Post post : posts) {
-            SimplePostVO simplePostVO = convertToSimplePostVO(post);
-            simplePostVOs.add(simplePostVO);
-        }
-
-        return simplePostVOs;
+        return convertToSimplePostVOs(posts);
     }
 
     @Override
     public List<SimplePostVO> getFollowPost(Integer pageNum, Integer pageSize) {
-        List<String> userIds = followMapper.selectFollowingByUserId(BaseContext.getUserId());
+        String currentUserId = BaseContext.getUserId();
+        int offset = (pageNum - 1) * pageSize;
+
+        if (MERGE_STRATEGY.equals(followStrategy)) {
+            List<String> followingIds = followMapper.selectFollowingByUserId(currentUserId);
+            if (followingIds.isEmpty()) {
+                return List.of();
+            }
+            List<String> postIds = authorRecentPostCache.merge(followingIds, offset, pageSize);
+            if (postIds != null) {
+                return getSummaries(postIds);
+            }
+        }
+
+        // 收件箱由发帖时扇出维护，读取只是一次 ZREVRANGE
+        if (!MERGE_STRATEGY.equals(followStrategy) && FollowInboxCache.covers(offset, pageSize)) {
+            try {
+                List<String> postIds = followInboxCache.range(currentUserId, offset, pageSize);
+                if (postIds == null) {
+                    List<String> followingIds = followMapper.selectFollowingByUserId(currentUserId);
+                    List<Post> recentPosts = followingIds.isEmpty()
+                            ? List.of()
+                            : postMapper.selectRecentIdsByUserIds(followingIds, FollowInboxCache.CAPACITY);
+                    followInboxCache.rebuild(currentUserId, recentPosts);
+                    postIds = followInboxCache.range(currentUserId, offset, pageSize);
+                }
+                if (postIds != null) {
+                    return getSummaries(postIds);
+                }
+            } catch (Exception e) {
+                log.warn("read follow inbox failed, fallback to database: {}", e.getMessage());
+            }
+        }
+
+        List<String> userIds = followMapper.selectFollowingByUserId(currentUserId);
 
         log.info(userIds.toString());
         if (userIds == null || userIds.isEmpty()) {
             return List.of();
         }
 
-        int offset = (pageNum - 1) * pageSize;
         List<Post> posts = postMapper.selectByUserIds(userIds, pageSize, offset);
         if (posts == null || posts.isEmpty()) {
             return List.of();
         }
-        List<SimplePostVO> simplePostVOs = new ArrayList<>();
-        for  (Post post : posts) {
-            SimplePostVO simplePostVO = convertToSimplePostVO(post);
-            simplePostVOs.add(simplePostVO);
-        }
+        return convertToSimplePostVOs(posts);
+    }
 
-        return simplePostVOs;
+    @Override
+    public List<SimplePostVO> getHotPost(Integer pageNum, Integer pageSize) {
+        int offset = (pageNum - 1) * pageSize;
+
+        List<String> postIds = null;
+        try {
+            postIds = hotPostRanking.range(offset, pageSize);
+            if (postIds == null && hotPostRanking.tryRebuild()) {
+                postIds = hotPostRanking.range(offset, pageSize);
+            }
+        } catch (Exception e) {
+            log.warn("read hot post ranking failed, fallback to database: {}", e.getMessage());
+        }
+        if (postIds == null) {
+            postIds = hotPostRanking.rangeFromDatabase(offset, pageSize);
+        }
+        return getSummaries(postIds);
     }
 
     @Override
@@ -198,50 +313,219 @@ public class PostServiceImpl implements PostService {
             return List.of();
         }
 
-        List<Post> posts = postMapper.selectPostsByIds(postIds);
+        return getSummaries(postIds);
+    }
+
+    @Override
+    public CursorPageVO<SimplePostVO> getUserPostByCursor(String userId, String cursor, Integer pageSize) {
+        int size = Math.min(Math.max(pageSize, 1), MAX_PAGE_SIZE);
+        String[] position = CursorUtil.decode(cursor);
+        List<Post> posts = position == null
+                ? postMapper.selectByUserIdAfter(userId, null, null, size)
+                : postMapper.selectByUserIdAfter(userId, parseTime(position[0]), position[1], size);
+
+        return toTimeCursorPage(posts, size);
+    }
+
+    @Override
+    public CursorPageVO<SimplePostVO> getVisiblePostByCursor(String cursor, Integer pageSize) {
+        int size = Math.min(Math.max(pageSize, 1), MAX_PAGE_SIZE);
+        String[] position = CursorUtil.decode(cursor);
+        List<Post> posts = position == null
+                ? postMapper.selectLatestAfter(null, null, size)
+                : postMapper.selectLatestAfter(parseTime(position[0]), position[1], size);
+
+        return toTimeCursorPage(posts, size);
+    }
+
+    @Override
+    public CursorPageVO<SimplePostVO> getFavoritePostByCursor(String cursor, Integer pageSize) {
+        int size = Math.min(Math.max(pageSize, 1), MAX_PAGE_SIZE);
+        String[] position = CursorUtil.decode(cursor);
+        List<Post> posts;
+        if (position == null) {
+            posts = postMapper.selectFavoriteAfter(null, null, size);
+        } else {
+            try {
+                posts = postMapper.selectFavoriteAfter(Integer.valueOf(position[0]), position[1], size);
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("invalid cursor");
+            }
+        }
+
+        List<SimplePostVO> simplePostVOs = convertToSimplePostVOs(posts);
+
+        String nextCursor = null;
+        if (posts.size() == size) {
+            Post last = posts.get(posts.size() - 1);
+            nextCursor = CursorUtil.encode(last.getLikeCount(), last.getId());
+        }
+        return new CursorPageVO<>(simplePostVOs, nextCursor);
+    }
+
+    @Override
+    public CursorPageVO<SimplePostVO> getFollowPostByCursor(String cursor, Integer pageSize) {
+        List<String> userIds = followMapper.selectFollowingByUserId(BaseContext.getUserId());
+        if (userIds == null || userIds.isEmpty()) {
+            return new CursorPageVO<>(List.of(), null);
+        }
+
+        int size = Math.min(Math.max(pageSize, 1), MAX_PAGE_SIZE);
+        String[] position = CursorUtil.decode(cursor);
+        List<Post> posts = position == null
+                ? postMapper.selectByUserIdsAfter(userIds, null, null, size)
+                : postMapper.selectByUserIdsAfter(userIds, parseTime(position[0]), position[1], size);
+
+        return toTimeCursorPage(posts, size);
+    }
+
+    /**
+     * 按给定顺序获取帖子摘要，先 MGET 摘要缓存，未命中的再批量查库并回填
+     */
+    private List<SimplePostVO> getSummaries(List<String> postIds) {
+        if (postIds.isEmpty()) {
+            return List.of();
+        }
+
+        Map<String, SimplePostVO> summaries = postSummaryCache.multiGet(postIds);
+
+        List<String> missingIds = new ArrayList<>();
+        for (String postId : postIds) {
+            if (!summaries.containsKey(postId)) {
+                missingIds.add(postId);
+            }
+        }
 
+        if (!missingIds.isEmpty()) {
+            List<SimplePostVO> loaded = buildSimplePostVOs(postMapper.selectPostsByIds(missingIds));
+            postSummaryCache.putAll(loaded);
+            for (SimplePostVO simplePostVO : loaded) {
+                summaries.put(simplePostVO.getId(), simplePostVO);
+            }
+        }
+
+        // 已删除的帖子可能还残留在时间线中，直接跳过
         List<SimplePostVO> simplePostVOs = new ArrayList<>();
-        for  (Post post : posts) {
-            SimplePostVO simplePostVO = convertToSimplePostVO(post);
-            simplePostVOs.add(simplePostVO);
+        List<String> userIds = new ArrayList<>();
+        for (String postId : postIds) {
+            SimplePostVO simplePostVO = summaries.get(postId);
+            if (simplePostVO != null) {
+                simplePostVOs.add(simplePostVO);
+                if (simplePostVO.getUserVO() != null) {
+                    userIds.add(simplePostVO.getUserVO().getId());
+                }
+            }
         }
 
+        // 摘要里的作者卡片可能已经过时，用作者卡片缓存覆盖
+        Map<String, SimpleUserVO> authors = authorLoader.loadAll(userIds);
+        for (SimplePostVO simplePostVO : simplePostVOs) {
+            if (simplePostVO.getUserVO() != null && authors.containsKey(simplePostVO.getUserVO().getId())) {
+                simplePostVO.setUserVO(authors.get(simplePostVO.getUserVO().getId()));
+            }
+        }
+        applyLiveCounts(simplePostVOs);
         return simplePostVOs;
     }
 
+    private CursorPageVO<SimplePostVO> toTimeCursorPage(List<Post> posts, int pageSize) {
+        List<SimplePostVO> simplePostVOs = convertToSimplePostVOs(posts);
+
+        // 不满一页说明已经到底
+        String nextCursor = null;
+        if (posts.size() == pageSize) {
+            Post last = posts.get(posts.size() - 1);
+            nextCursor = CursorUtil.encode(last.getCreatedAt(), last.getId());
+        }
+        return new CursorPageVO<>(simplePostVOs, nextCursor);
+    }
+
+    private LocalDateTime parseTime(String value) {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new RuntimeException("invalid cursor");
+        }
+    }
+
     private PostVO convertToPostVO(Post post) {
         PostVO postVO = new PostVO();
 
         BeanUtils.copyProperties(post,postVO);
 
-        UserVO userVO = userService.getUserById(post.getUserId());
+        postVO.setUserVO(authorLoader.load(post.getUserId()));
+        applyLiveCounts(postVO);
+        postVO.setIsLike(likeService.checkLikeStatus(TargetTypeConstant.POST, postVO.getId()));
 
-        SimpleUserVO simpleUserVO = new SimpleUserVO();
-        simpleUserVO.setId(userVO.getId());
-        simpleUserVO.setUsername(userVO.getUsername());
-        simpleUserVO.setIcon(userVO.getIcon());
+        postVO.setIsCreator(post.getUserId().equals(BaseContext.getUserId()));
 
-        postVO.setUserVO(simpleUserVO);
-        postVO.setIsLike(likeService.checkLikeStatus(TargetTypeConstant.POST, postVO.getId()));
+        return postVO;
+    }
 
-        postVO.setIsCreator(userVO.getId().equals(BaseContext.getUserId()));
+    private PostVO loadSharedPostVO(String id) {
+        Post post = postMapper.selectById(id);
+        if (post == null) {
+            return null;
+        }
 
+        PostVO postVO = new PostVO();
+        BeanUtils.copyProperties(post, postVO);
+        postVO.setUserVO(authorLoader.load(post.getUserId()));
         return postVO;
     }
 
-    private SimplePostVO convertToSimplePostVO(Post post) {
-        SimplePostVO simplePostVO = new SimplePostVO();
+    private List<SimplePostVO> convertToSimplePostVOs(List<Post> posts) {
+        List<SimplePostVO> simplePostVOs = buildSimplePostVOs(posts);
+        applyLiveCounts(simplePostVOs);
+        return simplePostVOs;
+    }
 
-        BeanUtils.copyProperties(post,simplePostVO);
+    /**
+     * 数据库中的计数加上分片计数之和以及本节点尚未落库的点赞增量
+     */
+    private void applyLiveCounts(List<SimplePostVO> simplePostVOs) {
+        List<String> postIds = new ArrayList<>();
+        for (SimplePostVO simplePostVO : simplePostVOs) {
+            postIds.add(simplePostVO.getId());
+        }
+        Map<String, Post> shardSums = postCounterShards.sums(postIds);
+
+        for (SimplePostVO simplePostVO : simplePostVOs) {
+            Post shardSum = shardSums.get(simplePostVO.getId());
+            if (shardSum != null) {
+                simplePostVO.setLikeCount(simplePostVO.getLikeCount() + shardSum.getLikeCount());
+                simplePostVO.setCommentCount(simplePostVO.getCommentCount() + shardSum.getCommentCount());
+            }
+            simplePostVO.setLikeCount(likeCountAggregator.withPending(TargetTypeConstant.POST, simplePostVO.getId(), simplePostVO.getLikeCount()));
+        }
+    }
 
-        UserVO userVO = userService.getUserById(post.getUserId());
+    private void applyLiveCounts(PostVO postVO) {
+        Post shardSum = postCounterShards.sums(List.of(postVO.getId())).get(postVO.getId());
+        if (shardSum != null) {
+            postVO.setLikeCount(postVO.getLikeCount() + shardSum.getLikeCount());
+            postVO.setCommentCount(postVO.getCommentCount() + shardSum.getCommentCount());
+        }
+        postVO.setLikeCount(likeCountAggregator.withPending(TargetTypeConstant.POST, postVO.getId(), postVO.getLikeCount()));
+    }
 
-        SimpleUserVO simpleUserVO = new SimpleUserVO();
-        simpleUserVO.setId(userVO.getId());
-        simpleUserVO.setUsername(userVO.getUsername());
-        simpleUserVO.setIcon(userVO.getIcon());
-        simplePostVO.setUserVO(simpleUserVO);
+    /**
+     * 只包含数据库中的数据，用于写入摘要缓存
+     */
+    private List<SimplePostVO> buildSimplePostVOs(List<Post> posts) {
+        List<String> userIds = new ArrayList<>();
+        for (Post post : posts) {
+            userIds.add(post.getUserId());
+        }
+        Map<String, SimpleUserVO> authors = authorLoader.loadAll(userIds);
 
-        return simplePostVO;
+        List<SimplePostVO> simplePostVOs = new ArrayList<>();
+        for (Post post : posts) {
+            SimplePostVO simplePostVO = new SimplePostVO();
+            BeanUtils.copyProperties(post,simplePostVO);
+            simplePostVO.setUserVO(authors.get(post.getUserId()));
+            simplePostVOs.add(simplePostVO);
+        }
+        return simplePostVOs;
     }
 }
@@ -1,8 +1,16 @@
 package com.bettercallxiaojin.home.service.impl;
 
+import com.bettercallxiaojin.home.cache.AuthorLoader;
+import com.bettercallxiaojin.home.cache.CommentPageCache;
+import com.bettercallxiaojin.home.cache.HotPostRanking;
+import com.bettercallxiaojin.home.cache.PostSummaryCache;
+import com.bettercallxiaojin.home.cache.ReplyPageCache;
+import com.bettercallxiaojin.home.cache.SharedPageCache;
 import com.bettercallxiaojin.home.common.BaseContext;
 import com.bettercallxiaojin.home.common.Constant.StatusConstant;
 import com.bettercallxiaojin.home.common.Constant.TargetTypeConstant;
+import com.bettercallxiaojin.home.counter.LikeCountAggregator;
+import com.bettercallxiaojin.home.counter.PostCounterShards;
 import com.bettercallxiaojin.home.mapper.*;
 import com.bettercallxiaojin.home.pojo.VO.*;
 import com.bettercallxiaojin.home.pojo.entity.Comment;
@@ -16,7 +24,10 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -24,14 +35,20 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class ReplyServiceImpl implements ReplyService {
 
-    private final UserService userService;
     private final LikeService likeService;
 
     private final CommentMapper commentMapper;
     private final PostMapper postMapper;
     private final ReplyMapper replyMapper;
     private final FollowMapper followMapper;
-    private final UserMapper userMapper;
+
+    private final PostSummaryCache postSummaryCache;
+    private final AuthorLoader authorLoader;
+    private final LikeCountAggregator likeCountAggregator;
+    private final PostCounterShards postCounterShards;
+    private final HotPostRanking hotPostRanking;
+    private final CommentPageCache commentPageCache;
+    private final ReplyPageCache replyPageCache;
 
 
     @Override
@@ -64,12 +81,16 @@ public class ReplyServiceImpl implements ReplyService {
         reply.setId(id);
 
         try {
-            postMapper.updateCommentCount(comment.getPostId(), 1);
+            postCounterShards.addCommentCount(comment.getPostId(), 1);
             commentMapper.updateReplyCount(commentId, 1);
             replyMapper.insert(reply);
         } catch (Exception e) {
             throw new RuntimeException("insert failed: " + e.getMessage());
         }
+        postSummaryCache.evict(comment.getPostId());
+        hotPostRanking.markDirty(comment.getPostId());
+        replyPageCache.evict(commentId);
+        commentPageCache.evict(comment.getPostId());
 
         ReplyVO replyVO = convertToReplyVO(reply);
 
@@ -94,13 +115,17 @@ public class ReplyServiceImpl implements ReplyService {
                 String commentId = reply.getCommentId();
                 Comment comment = commentMapper.selectById(commentId);
 
-                postMapper.updateCommentCount(comment.getPostId(), -1);
+                postCounterShards.addCommentCount(comment.getPostId(), -1);
                 commentMapper.updateReplyCount(commentId, -1);
+                postSummaryCache.evict(comment.getPostId());
+                hotPostRanking.markDirty(comment.getPostId());
+                commentPageCache.evict(comment.getPostId());
             }
             rows = replyMapper.updateStatus(id, status);
         } catch (Exception e) {
             throw new RuntimeException("change status failed: " + e.getMessage());
         }
+        replyPageCache.evict(reply.getCommentId());
         return rows > 0;
     }
 
@@ -128,6 +153,7 @@ public class ReplyServiceImpl implements ReplyService {
         } catch (Exception e) {
             throw new RuntimeException("update failed: " + e.getMessage());
         }
+        replyPageCache.evict(reply.getCommentId());
 
         ReplyVO replyVO = convertToReplyVO(reply);
 
@@ -136,23 +162,25 @@ public class ReplyServiceImpl implements ReplyService {
 
     @Override
     public List<ReplyVO> getRepliesByCommentId(String id, Integer pageNum, Integer pageSize) {
-        Comment comment = commentMapper.selectById(id);
-        if (comment == null) {
-            throw new RuntimeException("Comment Not Found");
-        }
+        int page = Math.max(pageNum, 1);
+        int size = SharedPageCache.clampPageSize(pageSize);
+
+        // 回复分页对所有浏览者相同，缓存后只叠加点赞和作者标记
+        List<ReplyVO> shared = replyPageCache.get(id, page, size, () -> {
+            Comment comment = commentMapper.selectById(id);
+            if (comment == null) {
+                throw new RuntimeException("Comment Not Found");
+            }
 
-        List<Reply> replies = replyMapper.selectByCommentId(id, pageSize, (pageNum - 1) * pageSize);
+            List<Reply> replies = replyMapper.selectByCommentId(id, size, (page - 1) * size);
 
-        if (replies == null || replies.isEmpty()) {
-            return List.of();
-        }
-        List<ReplyVO> replyVOS = new ArrayList<>();
-        for  (Reply reply : replies) {
-            ReplyVO replyVO = convertToReplyVO(reply);
-            replyVOS.add(replyVO);
-        }
+            if (replies == null || replies.isEmpty()) {
+                return List.of();
+            }
+            return buildReplyVOs(replies);
+        });
 
-        return replyVOS;
+        return overlay(shared);
     }
 
     @Override
@@ -161,31 +189,80 @@ public class ReplyServiceImpl implements ReplyService {
     }
 
     private ReplyVO convertToReplyVO(Reply reply) {
-        ReplyVO replyVO = new ReplyVO();
+        return overlay(buildReplyVOs(List.of(reply))).get(0);
+    }
 
-        BeanUtils.copyProperties(reply, replyVO);
+    /**
+     * 构建与浏览者无关的部分，可以缓存共享
+     */
+    private List<ReplyVO> buildReplyVOs(List<Reply> replies) {
+        // 被回复的回复的作者，一次查出
+        List<String> replyToIds = new ArrayList<>();
+        for (Reply reply : replies) {
+            if (reply.getReplyTo() != null) {
+                replyToIds.add(reply.getReplyTo());
+            }
+        }
+        Map<String, String> replyToUserIds = new HashMap<>();
+        if (!replyToIds.isEmpty()) {
+            for (Reply replyTo : replyMapper.selectUserIdsByIds(replyToIds)) {
+                replyToUserIds.put(replyTo.getId(), replyTo.getUserId());
+            }
+        }
 
-        UserVO userVO = userService.getUserById(reply.getUserId());
+        List<String> userIds = new ArrayList<>(replyToUserIds.values());
+        for (Reply reply : replies) {
+            userIds.add(reply.getUserId());
+        }
+        Map<String, SimpleUserVO> users = authorLoader.loadAll(userIds);
 
-        SimpleUserVO simpleUserVO = new SimpleUserVO();
-        simpleUserVO.setId(userVO.getId());
-        simpleUserVO.setUsername(userVO.getUsername());
-        simpleUserVO.setIcon(userVO.getIcon());
+        List<ReplyVO> replyVOS = new ArrayList<>();
+        for (Reply reply : replies) {
+            ReplyVO replyVO = new ReplyVO();
 
-        replyVO.setUserVO(simpleUserVO);
-        replyVO.setIsLike(likeService.checkLikeStatus(TargetTypeConstant.REPLY, replyVO.getId()));
-        replyVO.setIsCreator(userVO.getId().equals(BaseContext.getUserId()));
+            BeanUtils.copyProperties(reply, replyVO);
 
+            replyVO.setUserVO(users.get(reply.getUserId()));
 
-        ReplyToVO replyToVO = new ReplyToVO();
+            ReplyToVO replyToVO = new ReplyToVO();
 
-        replyToVO.setReplyId(reply.getReplyTo());
-        String replyToUserId = replyMapper.selectUserById(reply.getReplyTo());
-        replyToVO.setUserId(replyToUserId);
-        replyToVO.setUserName(userMapper.selectNameById(replyToUserId));
+            replyToVO.setReplyId(reply.getReplyTo());
+            String replyToUserId = replyToUserIds.get(reply.getReplyTo());
+            replyToVO.setUserId(replyToUserId);
+            SimpleUserVO replyToUser = replyToUserId == null ? null : users.get(replyToUserId);
+            replyToVO.setUserName(replyToUser == null ? null : replyToUser.getUsername());
 
-        replyVO.setReplyToVO(replyToVO);
+            replyVO.setReplyToVO(replyToVO);
 
-        return replyVO;
+            replyVOS.add(replyVO);
+        }
+        return replyVOS;
+    }
+
+    /**
+     * 复制共享结果并叠加当前浏览者的点赞状态（一次批量查询）和作者标记
+     */
+    private List<ReplyVO> overlay(List<ReplyVO> shared) {
+        if (shared.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> ids = new ArrayList<>();
+        for (ReplyVO replyVO : shared) {
+            ids.add(replyVO.getId());
+        }
+        Set<String> liked = likeService.checkLikeStatusBatch(TargetTypeConstant.REPLY, ids);
+
+        String currentUserId = BaseContext.getUserId();
+        List<ReplyVO> replyVOS = new ArrayList<>();
+        for (ReplyVO sharedVO : shared) {
+            ReplyVO replyVO = new ReplyVO();
+            BeanUtils.copyProperties(sharedVO, replyVO);
+            replyVO.setIsLike(liked.contains(replyVO.getId()));
+            replyVO.setLikeCount(likeCountAggregator.withPending(TargetTypeConstant.REPLY, replyVO.getId(), sharedVO.getLikeCount()));
+            replyVO.setIsCreator(replyVO.getUserVO() != null && replyVO.getUserVO().getId().equals(currentUserId));
+            replyVOS.add(replyVO);
+        }
+        return replyVOS;
     }
 }
@@ -1,5 +1,6 @@
 package com.bettercallxiaojin.home.service.impl;
 
+import com.bettercallxiaojin.home.cache.AuthorCardCache;
 import com.bettercallxiaojin.home.common.BaseContext;
 import com.bettercallxiaojin.home.mapper.ContactMapper;
 import com.bettercallxiaojin.home.mapper.FollowMapper;
@@ -28,6 +29,7 @@ public class UserServiceImpl implements UserService {
     private final StringRedisTemplate redisTemplate;
 
     private final FollowMapper followMapper;
+    private final AuthorCardCache authorCardCache;
 
     private static final String CHANGE_EMAIL_PREFIX = "changeem:code:";
 
@@ -103,6 +105,7 @@ public class UserServiceImpl implements UserService {
         }
 
         userMapper.updateUserById(user);
+        authorCardCache.evict(userId);
 
 
         UserVO userVO = new UserVO();
@@ -121,6 +124,7 @@ public class UserServiceImpl implements UserService {
         }
 
         userMapper.updateIcon(userId, iconUrl);
+        authorCardCache.evict(userId);
 
         user.setIcon(iconUrl);
 
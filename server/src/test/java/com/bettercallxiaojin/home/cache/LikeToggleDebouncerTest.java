@@ -0,0 +1,151 @@
+package com.bettercallxiaojin.home.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LikeToggleDebouncerTest {
+
+    private static final String USER = "u1";
+    private static final Integer TYPE = 1;
+    private static final String TARGET = "p1";
+
+    private final Deque<Runnable> scheduled = new ArrayDeque<>();
+    private ValueOperations<String, String> valueOperations;
+    private LikeToggleDebouncer debouncer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        TaskScheduler taskScheduler = mock(TaskScheduler.class);
+        doAnswer(invocation -> {
+            scheduled.add(invocation.getArgument(0));
+            return null;
+        }).when(taskScheduler).schedule(any(Runnable.class), any(Instant.class));
+
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        debouncer = new LikeToggleDebouncer(taskScheduler, redisTemplate, 2000);
+    }
+
+    @Test
+    void togglesInOneWindowPersistOnlyTheFinalState() {
+        List<Boolean> persisted = new ArrayList<>();
+        Consumer<Boolean> persist = persisted::add;
+
+        debouncer.submit(USER, TYPE, TARGET, true, persist);
+        debouncer.submit(USER, TYPE, TARGET, false, persist);
+        debouncer.submit(USER, TYPE, TARGET, true, persist);
+
+        assertThat(scheduled).hasSize(1);
+        assertThat(debouncer.pending(USER, TYPE, TARGET)).isTrue();
+
+        scheduled.poll().run();
+
+        assertThat(persisted).containsExactly(true);
+        assertThat(debouncer.pending(USER, TYPE, TARGET)).isNull();
+        assertThat(scheduled).isEmpty();
+    }
+
+    @Test
+    void stateInRedisWinsOverTheLocalState() {
+        List<Boolean> persisted = new ArrayList<>();
+        when(valueOperations.get(anyString())).thenReturn("false");
+
+        debouncer.submit(USER, TYPE, TARGET, true, persisted::add);
+        scheduled.poll().run();
+
+        assertThat(persisted).containsExactly(false);
+    }
+
+    @Test
+    void failedPersistIsRetriedAndKeptReadable() {
+        List<Boolean> persisted = new ArrayList<>();
+        int[] calls = {0};
+        Consumer<Boolean> persist = liked -> {
+            if (calls[0]++ == 0) {
+                throw new RuntimeException("db down");
+            }
+            persisted.add(liked);
+        };
+
+        debouncer.submit(USER, TYPE, TARGET, true, persist);
+        scheduled.poll().run();
+
+        // 失败后记录仍在，读取仍以它为准，并重新安排
+        assertThat(debouncer.pending(USER, TYPE, TARGET)).isTrue();
+        assertThat(scheduled).hasSize(1);
+
+        scheduled.poll().run();
+
+        assertThat(persisted).containsExactly(true);
+        assertThat(debouncer.pending(USER, TYPE, TARGET)).isNull();
+    }
+
+    @Test
+    void toggleDuringPersistIsPersistedAgain() {
+        List<Boolean> persisted = new ArrayList<>();
+        Consumer<Boolean> persist = liked -> {
+            if (persisted.isEmpty()) {
+                debouncer.submit(USER, TYPE, TARGET, false, persisted::add);
+            }
+            persisted.add(liked);
+        };
+
+        debouncer.submit(USER, TYPE, TARGET, true, persist);
+        scheduled.poll().run();
+
+        assertThat(debouncer.pending(USER, TYPE, TARGET)).isFalse();
+        scheduled.poll().run();
+
+        assertThat(persisted).containsExactly(true, false);
+        assertThat(debouncer.pending(USER, TYPE, TARGET)).isNull();
+    }
+
+    @Test
+    void toggleIsDroppedAfterMaxAttempts() {
+        debouncer.submit(USER, TYPE, TARGET, true, liked -> {
+            throw new RuntimeException("db down");
+        });
+
+        int runs = 0;
+        while (!scheduled.isEmpty()) {
+            scheduled.poll().run();
+            runs++;
+        }
+
+        assertThat(runs).isEqualTo(3);
+        assertThat(debouncer.pending(USER, TYPE, TARGET)).isNull();
+    }
+
+    @Test
+    void flushAllPersistsPendingTogglesWithoutScheduling() {
+        List<Boolean> persisted = new ArrayList<>();
+        debouncer.submit(USER, TYPE, TARGET, true, persisted::add);
+        scheduled.clear();
+
+        debouncer.flushAll();
+
+        assertThat(persisted).containsExactly(true);
+        assertThat(scheduled).isEmpty();
+        assertThat(debouncer.pending(USER, TYPE, TARGET)).isNull();
+    }
+}
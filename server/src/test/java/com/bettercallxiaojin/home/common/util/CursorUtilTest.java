@@ -0,0 +1,55 @@
+package com.bettercallxiaojin.home.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CursorUtilTest {
+
+    @Test
+    void timeCursorRoundTrips() {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 3, 1, 12, 30, 15, 123456000);
+
+        String[] position = CursorUtil.decode(CursorUtil.encode(createdAt, "post-1"));
+
+        assertThat(position).containsExactly(createdAt.toString(), "post-1");
+        assertThat(LocalDateTime.parse(position[0])).isEqualTo(createdAt);
+    }
+
+    @Test
+    void idContainingTheSeparatorRoundTrips() {
+        String[] position = CursorUtil.decode(CursorUtil.encode(42, "a|b"));
+
+        assertThat(position).containsExactly("42", "a|b");
+    }
+
+    @Test
+    void cursorIsUrlSafe() {
+        String cursor = CursorUtil.encode("??>>~~", "id");
+
+        assertThat(cursor).doesNotContain("+", "/", "=");
+    }
+
+    @Test
+    void emptyCursorMeansFirstPage() {
+        assertThat(CursorUtil.decode(null)).isNull();
+        assertThat(CursorUtil.decode("")).isNull();
+    }
+
+    @Test
+    void invalidCursorIsRejected() {
+        assertThatThrownBy(() -> CursorUtil.decode("not base64!")).hasMessage("invalid cursor");
+        assertThatThrownBy(() -> CursorUtil.decode(encodeRaw("no-separator"))).hasMessage("invalid cursor");
+        assertThatThrownBy(() -> CursorUtil.decode(encodeRaw("|id"))).hasMessage("invalid cursor");
+        assertThatThrownBy(() -> CursorUtil.decode(encodeRaw("42|"))).hasMessage("invalid cursor");
+    }
+
+    private String encodeRaw(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
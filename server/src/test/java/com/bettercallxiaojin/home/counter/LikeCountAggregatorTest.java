@@ -0,0 +1,174 @@
+package com.bettercallxiaojin.home.counter;
+
+import com.bettercallxiaojin.home.cache.CommentPageCache;
+import com.bettercallxiaojin.home.cache.PostDetailCache;
+import com.bettercallxiaojin.home.cache.PostSummaryCache;
+import com.bettercallxiaojin.home.cache.ReplyPageCache;
+import com.bettercallxiaojin.home.common.Constant.TargetTypeConstant;
+import com.bettercallxiaojin.home.mapper.CommentMapper;
+import com.bettercallxiaojin.home.mapper.LikeFlushLogMapper;
+import com.bettercallxiaojin.home.mapper.PostMapper;
+import com.bettercallxiaojin.home.mapper.ReplyMapper;
+import com.bettercallxiaojin.home.mapper.UserMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LikeCountAggregatorTest {
+
+    private static final String NODE = "node-a";
+
+    private PostMapper postMapper;
+    private CommentMapper commentMapper;
+    private LikeFlushLogMapper likeFlushLogMapper;
+    private LikeJournal likeJournal;
+    private LikeCountAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        postMapper = mock(PostMapper.class);
+        commentMapper = mock(CommentMapper.class);
+        likeFlushLogMapper = mock(LikeFlushLogMapper.class);
+        likeJournal = mock(LikeJournal.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(invocation -> {
+            Consumer<Object> action = invocation.getArgument(0);
+            action.accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        when(postMapper.selectUserIdsByIds(any())).thenReturn(List.of());
+        when(likeFlushLogMapper.insert(anyString())).thenReturn(1);
+        when(likeJournal.rotate(anyString(), anyString())).thenReturn(true);
+        when(likeJournal.readFlushing(anyString())).thenReturn(new LikeJournal.Batch(null, Map.of()));
+        when(likeJournal.tryLease(anyString())).thenReturn("token");
+        when(likeJournal.nodes()).thenReturn(Set.of());
+
+        aggregator = new LikeCountAggregator(postMapper, commentMapper, mock(ReplyMapper.class), mock(UserMapper.class),
+                likeFlushLogMapper, likeJournal, transactionTemplate, mock(PostSummaryCache.class),
+                mock(PostDetailCache.class), mock(CommentPageCache.class), mock(ReplyPageCache.class),
+                mock(PostCounterShards.class), NODE);
+    }
+
+    @Test
+    void flushAppliesAccumulatedDeltasOnce() {
+        aggregator.add(TargetTypeConstant.POST, "p1", 1);
+        aggregator.add(TargetTypeConstant.POST, "p1", 1);
+
+        aggregator.flush();
+
+        verify(postMapper).batchUpdateLikeCount(Map.of("p1", 2L));
+        verify(likeJournal).clearFlushing(eq(NODE), anyString());
+        assertThat(aggregator.pendingDelta(TargetTypeConstant.POST, "p1")).isZero();
+    }
+
+    @Test
+    void failedFlushRetriesWithTheSameIdBeforeRotatingAgain() {
+        when(postMapper.batchUpdateLikeCount(anyMap()))
+                .thenThrow(new RuntimeException("db down"))
+                .thenReturn(1);
+        aggregator.add(TargetTypeConstant.POST, "p1", 1);
+
+        aggregator.flush();
+        // 落库失败的增量仍计入读取
+        assertThat(aggregator.pendingDelta(TargetTypeConstant.POST, "p1")).isEqualTo(1);
+        verify(likeJournal, never()).clearFlushing(anyString(), anyString());
+
+        aggregator.add(TargetTypeConstant.POST, "p1", 1);
+        aggregator.flush();
+
+        ArgumentCaptor<String> ids = ArgumentCaptor.forClass(String.class);
+        verify(likeFlushLogMapper, times(3)).insert(ids.capture());
+        // 重试沿用第一次的 flush id，之后新累加的增量是新批次
+        assertThat(ids.getAllValues().get(1)).isEqualTo(ids.getAllValues().get(0));
+        assertThat(ids.getAllValues().get(2)).isNotEqualTo(ids.getAllValues().get(0));
+        verify(likeJournal, times(2)).rotate(eq(NODE), anyString());
+        assertThat(aggregator.pendingDelta(TargetTypeConstant.POST, "p1")).isZero();
+    }
+
+    @Test
+    void failedRotateSkipsTheFlush() {
+        when(likeJournal.rotate(anyString(), anyString())).thenThrow(new RuntimeException("redis down"));
+        aggregator.add(TargetTypeConstant.POST, "p1", 1);
+
+        aggregator.flush();
+
+        verify(likeFlushLogMapper, never()).insert(anyString());
+        verify(postMapper, never()).batchUpdateLikeCount(anyMap());
+        assertThat(aggregator.pendingDelta(TargetTypeConstant.POST, "p1")).isEqualTo(1);
+    }
+
+    @Test
+    void alreadyLoggedBatchIsNotAppliedAgain() {
+        when(likeFlushLogMapper.insert(anyString())).thenReturn(0);
+        aggregator.add(TargetTypeConstant.COMMENT, "c1", 1);
+
+        aggregator.flush();
+
+        verify(commentMapper, never()).batchUpdateLikeCount(anyMap());
+        assertThat(aggregator.pendingDelta(TargetTypeConstant.COMMENT, "c1")).isZero();
+    }
+
+    @Test
+    void replayAppliesLeftoverFlushingWithItsOwnIdThenPending() throws InterruptedException {
+        when(likeJournal.readFlushing(NODE))
+                .thenReturn(new LikeJournal.Batch("old", Map.of(TargetTypeConstant.POST + ":p1", 3L)))
+                .thenReturn(new LikeJournal.Batch("new", Map.of(TargetTypeConstant.POST + ":p2", 1L)));
+
+        aggregator.replay();
+
+        verify(likeFlushLogMapper).insert("old");
+        verify(postMapper).batchUpdateLikeCount(Map.of("p1", 3L));
+        verify(postMapper).batchUpdateLikeCount(Map.of("p2", 1L));
+        verify(likeJournal).register(NODE);
+    }
+
+    @Test
+    void replayDrainsJournalsOfNodesWhoseLeaseExpired() throws InterruptedException {
+        when(likeJournal.nodes()).thenReturn(Set.of(NODE, "node-b", "node-c"));
+        when(likeJournal.tryLease("node-c")).thenReturn(null);
+        when(likeJournal.readFlushing("node-b"))
+                .thenReturn(new LikeJournal.Batch(null, Map.of()))
+                .thenReturn(new LikeJournal.Batch("b", Map.of(TargetTypeConstant.POST + ":p1", 2L)));
+
+        aggregator.replay();
+
+        verify(postMapper).batchUpdateLikeCount(Map.of("p1", 2L));
+        verify(likeJournal).unregister("node-b");
+        verify(likeJournal).releaseLease("node-b", "token");
+        verify(likeJournal, never()).unregister("node-c");
+        verify(likeJournal, never()).readFlushing("node-c");
+    }
+
+    @Test
+    void blankNodeIdFallsBackToAGeneratedId() {
+        LikeCountAggregator unnamed = new LikeCountAggregator(postMapper, commentMapper, mock(ReplyMapper.class),
+                mock(UserMapper.class), likeFlushLogMapper, likeJournal, mock(TransactionTemplate.class),
+                mock(PostSummaryCache.class), mock(PostDetailCache.class), mock(CommentPageCache.class),
+                mock(ReplyPageCache.class), mock(PostCounterShards.class), "");
+
+        assertDoesNotThrow(unnamed::replay);
+        ArgumentCaptor<String> node = ArgumentCaptor.forClass(String.class);
+        verify(likeJournal).register(node.capture());
+        assertThat(node.getValue()).isNotBlank();
+    }
+}
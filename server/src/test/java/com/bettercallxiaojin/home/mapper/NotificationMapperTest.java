@@ -0,0 +1,185 @@
+package com.bettercallxiaojin.home.mapper;
+
+import com.bettercallxiaojin.home.common.Constant.NotificationConstant;
+import com.bettercallxiaojin.home.common.Constant.TargetTypeConstant;
+import com.bettercallxiaojin.home.pojo.entity.Notification;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.boot.test.autoconfigure.MybatisTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * 聚合通知和已读水位的 SQL，需要 Docker；每条语句单独提交，now() 才能区分先后
+ */
+@MybatisTest(properties = "mybatis.configuration.map-underscore-to-camel-case=true")
+@Testcontainers(disabledWithoutDocker = true)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Sql("/schema/notification.sql")
+class NotificationMapperTest {
+
+    private static final String USER = "author";
+    private static final String AGG_KEY = "like:post:p1:0";
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private NotificationMapper notificationMapper;
+
+    @Test
+    void aggregatedRowCountsEachActorOnce() {
+        assertThat(notificationMapper.insertAggregated(List.of(like("a1")))).hasSize(1);
+        notificationMapper.addActors(List.of(like("a1")), List.of(actor("a1")), 3);
+
+        // 已有聚合行时不再插入，重复的触发用户不计数
+        assertThat(notificationMapper.insertAggregated(List.of(like("a1")))).isEmpty();
+        assertThat(notificationMapper.addActors(List.of(like("a1")), List.of(actor("a1")), 3)).isEmpty();
+
+        Notification row = like("a2");
+        row.setActorIds("a2,a3");
+        notificationMapper.insertAggregated(List.of(row));
+        List<Notification> updated = notificationMapper.addActors(List.of(row), List.of(actor("a2"), actor("a3")), 3);
+
+        assertThat(updated).singleElement().satisfies(n -> assertThat(n.getActorCount()).isEqualTo(3));
+        assertThat(page().get(0).getActorIds()).isEqualTo("a2,a3,a1");
+        assertThat(unreadLikes()).isEqualTo(1);
+    }
+
+    @Test
+    void unlikeShrinksTheAggregatedRowAndDeletesItWithTheLastActor() {
+        notificationMapper.insertAggregated(List.of(like("a1")));
+        notificationMapper.addActors(List.of(like("a1")), List.of(actor("a1"), actor("a2")), 3);
+
+        assertThat(deleteLike("a1")).isEmpty();
+        assertThat(page().get(0).getActorCount()).isEqualTo(1);
+
+        // 没有记录过的用户取消点赞不影响计数
+        assertThat(deleteLike("a9")).isEmpty();
+        assertThat(page().get(0).getActorCount()).isEqualTo(1);
+
+        assertThat(deleteLike("a2")).hasSize(1);
+        assertThat(page()).isEmpty();
+        assertThat(notificationMapper.selectDeletedIdsSince(USER, LocalDateTime.now().minusDays(1))).hasSize(1);
+    }
+
+    @Test
+    void readMarkCoversOnlyNotificationsStoredBeforeIt() throws InterruptedException {
+        LocalDateTime createdAt = LocalDateTime.now().minusMinutes(1);
+        notificationMapper.insert(single("n1", createdAt));
+        Thread.sleep(5);
+
+        notificationMapper.upsertReadMark(USER, NotificationConstant.COMMENT, LocalDateTime.now());
+        Thread.sleep(5);
+
+        // 异步写入时 created_at 早于水位，但在设置水位之后才入库
+        notificationMapper.insert(single("n2", createdAt));
+
+        assertThat(page(NotificationConstant.COMMENT))
+                .extracting(Notification::getId, Notification::getRead)
+                .containsExactlyInAnyOrder(tuple("n1", true), tuple("n2", false));
+        assertThat(notificationMapper.countUnreadByType(USER, NotificationConstant.COMMENT)).isEqualTo(1);
+        assertThat(notificationMapper.updateRead("n1")).isNull();
+        assertThat(notificationMapper.updateRead("n2")).isNotNull();
+    }
+
+    @Test
+    void readMarkNeverMovesBack() {
+        LocalDateTime createdAt = LocalDateTime.now().minusMinutes(10);
+        notificationMapper.insert(single("n1", createdAt));
+
+        notificationMapper.upsertReadMark(USER, NotificationConstant.COMMENT, LocalDateTime.now());
+        notificationMapper.upsertReadMark(USER, NotificationConstant.COMMENT, createdAt.minusMinutes(1));
+
+        assertThat(notificationMapper.countUnreadByType(USER, NotificationConstant.COMMENT)).isZero();
+    }
+
+    @Test
+    void newActorAfterTheReadMarkMakesTheRowUnreadAgain() throws InterruptedException {
+        notificationMapper.insertAggregated(List.of(like("a1")));
+        notificationMapper.addActors(List.of(like("a1")), List.of(actor("a1")), 3);
+        Thread.sleep(5);
+
+        notificationMapper.upsertReadMark(USER, NotificationConstant.LIKE, LocalDateTime.now().plusMinutes(1));
+        assertThat(unreadLikes()).isZero();
+        Thread.sleep(5);
+
+        notificationMapper.addActors(List.of(like("a2")), List.of(actor("a2")), 3);
+
+        assertThat(unreadLikes()).isEqualTo(1);
+    }
+
+    private List<Notification> deleteLike(String actorId) {
+        return notificationMapper.deleteLike(actorId, "p1", TargetTypeConstant.POST, NotificationConstant.LIKE);
+    }
+
+    private int unreadLikes() {
+        for (Map<String, Object> row : notificationMapper.countUnreadGroupByType(USER)) {
+            if (((Number) row.get("type")).intValue() == NotificationConstant.LIKE) {
+                return ((Number) row.get("count")).intValue();
+            }
+        }
+        return 0;
+    }
+
+    private List<Notification> page() {
+        return page(NotificationConstant.LIKE);
+    }
+
+    private List<Notification> page(int type) {
+        return notificationMapper.selectByUserAndTypes(USER, List.of(type), null, null, 10);
+    }
+
+    private Notification like(String actorId) {
+        Notification notification = base(UUID.randomUUID().toString(), LocalDateTime.now());
+        notification.setType(NotificationConstant.LIKE);
+        notification.setTargetUserId(actorId);
+        notification.setAggKey(AGG_KEY);
+        notification.setActorCount(1);
+        notification.setActorIds(actorId);
+        return notification;
+    }
+
+    private Notification actor(String actorId) {
+        Notification actor = new Notification();
+        actor.setUserId(USER);
+        actor.setAggKey(AGG_KEY);
+        actor.setTargetUserId(actorId);
+        return actor;
+    }
+
+    private Notification single(String id, LocalDateTime createdAt) {
+        Notification notification = base(id, createdAt);
+        notification.setType(NotificationConstant.COMMENT);
+        notification.setTargetUserId("c1");
+        return notification;
+    }
+
+    private Notification base(String id, LocalDateTime createdAt) {
+        Notification notification = new Notification();
+        notification.setId(id);
+        notification.setUserId(USER);
+        notification.setRead(false);
+        notification.setCreatedAt(createdAt);
+        notification.setTargetId("p1");
+        notification.setTargetType(TargetTypeConstant.POST);
+        notification.setPostId("p1");
+        return notification;
+    }
+}
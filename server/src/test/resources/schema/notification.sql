@@ -0,0 +1,41 @@
+DROP TABLE IF EXISTS notification_actor, notification_read_mark, notification_tombstone, notification;
+
+CREATE TABLE notification (
+    id             VARCHAR(255) PRIMARY KEY,
+    user_id        VARCHAR(255) NOT NULL,
+    "read"         BOOLEAN      NOT NULL DEFAULT FALSE,
+    type           INT          NOT NULL,
+    created_at     TIMESTAMP    NOT NULL,
+    target_user_id VARCHAR(255),
+    target_id      VARCHAR(255),
+    target_type    INT,
+    target_content TEXT,
+    content        TEXT,
+    post_id        VARCHAR(255),
+    agg_key        VARCHAR(255),
+    actor_count    INT          NOT NULL DEFAULT 1,
+    actor_ids      TEXT,
+    updated_at     TIMESTAMP    NOT NULL DEFAULT now(),
+    notified_at    TIMESTAMP    NOT NULL DEFAULT now()
+);
+CREATE UNIQUE INDEX uk_notification_agg ON notification (user_id, agg_key) WHERE agg_key IS NOT NULL;
+
+CREATE TABLE notification_actor (
+    notification_id VARCHAR(255) NOT NULL REFERENCES notification (id) ON DELETE CASCADE,
+    actor_id        VARCHAR(255) NOT NULL,
+    PRIMARY KEY (notification_id, actor_id)
+);
+
+CREATE TABLE notification_read_mark (
+    user_id    VARCHAR(64) NOT NULL,
+    type       INT         NOT NULL,
+    read_up_to TIMESTAMP   NOT NULL,
+    marked_at  TIMESTAMP   NOT NULL DEFAULT now(),
+    PRIMARY KEY (user_id, type)
+);
+
+CREATE TABLE notification_tombstone (
+    notification_id VARCHAR(64) PRIMARY KEY,
+    user_id         VARCHAR(64) NOT NULL,
+    deleted_at      TIMESTAMP   NOT NULL
+);